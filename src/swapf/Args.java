@@ -28,10 +28,12 @@
  */
 package swapf;
 
-import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -40,20 +42,115 @@ import java.util.List;
  */
 public class Args {
     
-    private List<File> fileList;
+    private List<String> fileArgs;
+    private List<Path> fileList;
+    private boolean progress;
+    private boolean dryRun;
+    private long latencyMillis;
+    private int rollbackJobs = 1;
+    private boolean verify;
+    private boolean durable;
+    private boolean daemon;
+    private boolean daemonDisabled;
     
     private Args() {
         
     }
 
+    /**
+     * Get the input FILE arguments as given on the command line
+     * @return input FILE arguments
+     */
+    public List<String> getFileArgs() {
+        return fileArgs;
+    }
+    
     /**
      * Get the input FILE list
      * @return input FILE list
      */
-    public List<File> getFileList() {
+    public List<Path> getFileList() {
         return fileList;
     }
     
+    /**
+     * Set the input FILE list
+     * @param fileList input FILE list
+     */
+    public void setFileList(List<Path> fileList) {
+        this.fileList = fileList;
+    }
+    
+    /**
+     * Checks if the progress of the renames should be reported
+     * @return true if the progress flag was set, false otherwise
+     */
+    public boolean isProgressEnabled() {
+        return progress;
+    }
+    
+    /**
+     * Checks if the swaps should be rehearsed in memory instead of renaming
+     * the input files
+     * @return true if the dry run flag was set, false otherwise
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+    
+    /**
+     * Gets the latency to add to each file system operation of a dry run,
+     * to simulate slow storage such as NFS
+     * @return latency in milliseconds
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+    
+    /**
+     * Gets the maximum number of swap cycles to roll back in parallel if a
+     * swap fails
+     * @return maximum number of cycles to roll back in parallel
+     */
+    public int getRollbackJobs() {
+        return rollbackJobs;
+    }
+    
+    /**
+     * Checks if the swapped files should be verified against their size,
+     * last modified time and content hash from before the swap
+     * @return true if the verify flag was set, false otherwise
+     */
+    public boolean isVerifyEnabled() {
+        return verify;
+    }
+    
+    /**
+     * Checks if the directories containing the renamed files should be
+     * flushed to storage at the end of each rename phase
+     * @return true if the durable flag was set, false otherwise
+     */
+    public boolean isDurable() {
+        return durable;
+    }
+    
+    /**
+     * Checks if swapf should run as a resident daemon
+     * @return true if the daemon flag was set, false otherwise
+     */
+    public boolean isDaemon() {
+        return daemon;
+    }
+    
+    /**
+     * Checks if the swaps should be run by this process even if a daemon
+     * is running
+     * @return true if the no daemon flag was set, false otherwise
+     */
+    public boolean isDaemonDisabled() {
+        return daemonDisabled;
+    }
+    
     /**
      * Get a valid path from a given input FILE argument.
      * Cygwin paths will be converted into Windows format
@@ -68,30 +165,123 @@ public class Args {
     }
     
     /**
-     * Parses the given arguments into an Args object
+     * Parses the given arguments into an Args object. The input FILE
+     * arguments are only recorded; they are not resolved until
+     * resolveFileList is called.
      * @param args Program arguments
      * @return Args or null if help flag set
+     * @throws IllegalArgumentException if the latency is not a non-negative
+     * number of milliseconds
+     * @throws IllegalArgumentException if the number of rollback jobs is not
+     * a positive number
      */
     public static Args parse(String[] args) {
         Args arguments = new Args();
-        List<File> list = new ArrayList<File>();
-        File input;
+        List<String> files = new ArrayList<String>();
         for(String arg : args) {
             if(arg.equals("-h") || arg.equals("--help")) {
                 return null;
+            } else if(arg.equals("-p") || arg.equals("--progress")) {
+                arguments.progress = true;
+            } else if(arg.equals("-n") || arg.equals("--dry-run")) {
+                arguments.dryRun = true;
+            } else if(arg.startsWith("--rollback-jobs=")) {
+                arguments.rollbackJobs = parseRollbackJobs(arg.substring(16));
+            } else if(arg.startsWith("--latency=")) {
+                arguments.latencyMillis = parseLatency(arg.substring(10));
+                arguments.dryRun = true;
+            } else if(arg.equals("-v") || arg.equals("--verify")) {
+                arguments.verify = true;
+            } else if(arg.equals("-d") || arg.equals("--durable")) {
+                arguments.durable = true;
+            } else if(arg.equals("--daemon")) {
+                arguments.daemon = true;
+            } else if(arg.equals("--no-daemon")) {
+                arguments.daemonDisabled = true;
             } else {
-                input = new File(getPath(arg));
-                if (input.isDirectory()) {
-                    list.addAll(Arrays.asList(input.listFiles(new FileFilter())));
-                } else {
-                    list.add(input);
-                }
+                files.add(arg);
             }
         }
-        arguments.fileList = list;
+        arguments.fileArgs = files;
         return arguments;
     }
     
+    /**
+     * Parses the given rollback jobs argument
+     * @param value maximum number of cycles to roll back in parallel
+     * @return maximum number of cycles to roll back in parallel
+     * @throws IllegalArgumentException if value is not a positive number
+     */
+    private static int parseRollbackJobs(String value) {
+        try {
+            int jobs = Integer.parseInt(value);
+            if(jobs >= 1) {
+                return jobs;
+            }
+        } catch(NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(String.format("The number of rollback jobs %s is not a positive number", value));
+    }
+    
+    /**
+     * Parses the given latency argument
+     * @param value latency in milliseconds
+     * @return latency in milliseconds
+     * @throws IllegalArgumentException if value is not a non-negative number
+     */
+    private static long parseLatency(String value) {
+        try {
+            long latency = Long.parseLong(value);
+            if(latency >= 0) {
+                return latency;
+            }
+        } catch(NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(String.format("The latency %s is not a valid number of milliseconds", value));
+    }
+    
+    /**
+     * Resolves the input FILE arguments into the input FILE list. If an
+     * input FILE is a directory, the files in the directory are added.
+     * @param workingDir Directory to resolve relative FILE arguments against.
+     * The input files will belong to the file system of this directory.
+     * @param cache Cache to list directories with or null to list
+     * directories directly
+     * @throws IOException if an input FILE directory could not be listed
+     */
+    public void resolveFileList(Path workingDir, DirectoryCache cache) throws IOException {
+        List<Path> list = new ArrayList<Path>();
+        Path input;
+        for(String arg : fileArgs) {
+            input = workingDir.resolve(getPath(arg));
+            if (Files.isDirectory(input)) {
+                list.addAll(cache == null ? listFiles(input) : cache.list(input));
+            } else {
+                list.add(input);
+            }
+        }
+        fileList = list;
+    }
+    
+    /**
+     * Lists the files in the given directory. Subdirectories are not
+     * included.
+     * @param dir Directory to list
+     * @return files in dir
+     * @throws IOException if dir could not be listed
+     */
+    static List<Path> listFiles(Path dir) throws IOException {
+        List<Path> list = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, new FileFilter())) {
+            for(Path entry : stream) {
+                list.add(entry);
+            }
+        }
+        return list;
+    }
+    
     /**
      * Validates the argument given
      * @param args Parsed Arguments to validate
@@ -101,9 +291,9 @@ public class Args {
      * 1 file to swap
      */
     public static void validate(Args args) throws FileNotFoundException {
-        for(File f : args.fileList) {
-            if (!f.exists()) {
-                throw new FileNotFoundException(String.format("The input file %s does not exist", f.getAbsolutePath()));
+        for(Path f : args.fileList) {
+            if (!Files.exists(f)) {
+                throw new FileNotFoundException(String.format("The input file %s does not exist", f.toAbsolutePath()));
             }
         }
         switch(args.fileList.size()) {
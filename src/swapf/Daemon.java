@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A resident process that runs swaps on behalf of the swapf command line.
+ * Keeping one JVM running avoids the start up cost of each swap and lets
+ * directory listings be cached between swaps. The daemon only listens on the
+ * loopback interface and every request must present the secret token that
+ * the daemon writes to its owner only state file.
+ * @author Sam Malone
+ */
+public class Daemon {
+    
+    public static final String PING = "PING";
+    public static final String LIST = "LIST";
+    public static final String VALIDATE = "VALIDATE";
+    public static final String SWAP = "SWAP";
+    
+    /**
+     * Maximum length in bytes of a message accepted by readMessage
+     */
+    private static final int MAX_MESSAGE_LENGTH = 16 * 1024 * 1024;
+    
+    /**
+     * Maximum number of requests handled at once
+     */
+    private static final int MAX_HANDLERS = 8;
+    
+    /**
+     * Maximum number of accepted connections waiting for a handler. Any
+     * further connections are closed straight away.
+     */
+    private static final int MAX_QUEUED = 64;
+    
+    /**
+     * Time to wait for a client to send each part of its request
+     */
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+    
+    private final FileSystem fs;
+    private final ServerSocket server;
+    private final String token;
+    private final DirectoryCache cache;
+    private final ThreadPoolExecutor executor;
+    private final Object swapLock;
+    
+    /**
+     * Creates a Daemon listening on an ephemeral loopback port
+     * @throws IOException if the socket or directory watcher could not be
+     * created
+     */
+    public Daemon() throws IOException {
+        this.fs = FileSystems.getDefault();
+        this.server = new ServerSocket(0, 50, InetAddress.getByName(null));
+        this.token = generateToken();
+        this.cache = new DirectoryCache(fs.newWatchService());
+        this.executor = new ThreadPoolExecutor(MAX_HANDLERS, MAX_HANDLERS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED));
+        executor.allowCoreThreadTimeOut(true);
+        this.swapLock = new Object();
+    }
+    
+    /**
+     * Gets the state file that a running daemon advertises its port and
+     * token in
+     * @return daemon state file
+     */
+    public static Path getStateFile() {
+        return Paths.get(System.getProperty("user.home"), ".swapf", "daemon");
+    }
+    
+    /**
+     * Generates a random token for clients to authenticate with
+     * @return hex encoded token
+     */
+    private static String generateToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Advertises the daemon in the state file and serves requests until the
+     * process is terminated
+     * @throws IOException if the state file could not be written or the
+     * socket fails
+     */
+    public void run() throws IOException {
+        final Path stateFile = getStateFile();
+        writeStateFile(stateFile);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Files.deleteIfExists(stateFile);
+                } catch(IOException e) {
+                    
+                }
+            }
+        });
+        System.out.println(String.format("swapf daemon listening on %s:%d", server.getInetAddress().getHostAddress(), server.getLocalPort()));
+        while(true) {
+            final Socket socket = server.accept();
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                // too many pending requests so drop this one
+                socket.close();
+            }
+        }
+    }
+    
+    /**
+     * Writes the port and token of this daemon to the state file. The file
+     * is only readable by its owner where the file system supports POSIX
+     * permissions.
+     * @param stateFile file to write
+     * @throws IOException if the file could not be written
+     */
+    private void writeStateFile(Path stateFile) throws IOException {
+        boolean posix = fs.supportedFileAttributeViews().contains("posix");
+        if(posix) {
+            if(!Files.isDirectory(stateFile.getParent())) {
+                Files.createDirectories(stateFile.getParent(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            }
+        } else {
+            Files.createDirectories(stateFile.getParent());
+        }
+        Files.deleteIfExists(stateFile);
+        if(posix) {
+            Files.createFile(stateFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(stateFile);
+        }
+        String state = server.getLocalPort() + "\n" + token + "\n";
+        try (OutputStream out = Files.newOutputStream(stateFile)) {
+            out.write(state.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    /**
+     * Handles a single request from a client. Any IOException or
+     * RuntimeException raised by the request is reported back to the
+     * client. A client that stops sending its request is disconnected
+     * after READ_TIMEOUT_MILLIS.
+     * @param socket Client connection
+     */
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setSoTimeout(READ_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            try {
+                byte[] expected = token.getBytes(StandardCharsets.UTF_8);
+                if(!MessageDigest.isEqual(expected, in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+                    throw new IOException("Invalid daemon token");
+                }
+                String command = in.readUTF();
+                switch(command) {
+                    case PING: writeOk(out); break;
+                    case LIST: list(in, out); break;
+                    case VALIDATE: validate(in, out); break;
+                    case SWAP: swap(in, out); break;
+                    default: throw new IOException("Unknown daemon command " + command);
+                }
+            } catch(IOException e) {
+                writeError(out, e.getMessage());
+            } catch(RuntimeException e) {
+                writeError(out, "The swapf daemon was unable to run the request: " + e);
+            }
+            out.flush();
+        } catch(IOException e) {
+            // the client has gone away so there is nobody to report to
+        }
+    }
+    
+    /**
+     * Resolves and validates the input FILE arguments of a client using the
+     * directory cache and writes the resulting input FILE list
+     */
+    private void list(DataInputStream in, DataOutputStream out) throws IOException {
+        Path workingDir = fs.getPath(in.readUTF());
+        String[] fileArgs = new String[in.readInt()];
+        for(int i = 0; i < fileArgs.length; i++) {
+            fileArgs[i] = in.readUTF();
+        }
+        Args arguments = Args.parse(fileArgs);
+        arguments.resolveFileList(workingDir, cache);
+        Args.validate(arguments);
+        writeOk(out);
+        writePaths(out, arguments.getFileList());
+    }
+    
+    /**
+     * Validates the swaps requested by a client
+     */
+    private void validate(DataInputStream in, DataOutputStream out) throws IOException {
+        readSwapper(in).validateSwaps();
+        writeOk(out);
+    }
+    
+    /**
+     * Runs the swaps requested by a client. Only one swap runs at a time and
+     * the listings of every directory involved are invalidated afterwards,
+     * without waiting for the directory watcher to notice the renames.
+     */
+    private void swap(DataInputStream in, DataOutputStream out) throws IOException {
+        Swapper swapper = readSwapper(in);
+        if(in.readBoolean()) {
+            swapper.setVerifier(new Verifier());
+        }
+        if(in.readBoolean()) {
+            swapper.setDirectorySync(new DirectorySync());
+        }
+        try {
+            swapper.setRollbackParallelism(in.readInt());
+        } catch(IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        synchronized(swapLock) {
+            try {
+                swapper.validateSwaps();
+                swapper.swap();
+            } finally {
+                Set<Path> dirs = new HashSet<Path>();
+                for(Path file : swapper.getFileList()) {
+                    dirs.add(file.toAbsolutePath().getParent());
+                }
+                for(Path dir : dirs) {
+                    cache.invalidate(dir);
+                }
+            }
+        }
+        writeOk(out);
+    }
+    
+    /**
+     * Reads an input FILE list and its swap IDs into a Swapper
+     * @throws IOException if the swap IDs are not valid for the list
+     */
+    private Swapper readSwapper(DataInputStream in) throws IOException {
+        List<Path> fileList = readPaths(in, fs);
+        List<Integer> swapIds = new ArrayList<Integer>(fileList.size());
+        int count = in.readInt();
+        for(int i = 0; i < count; i++) {
+            swapIds.add(in.readInt());
+        }
+        Swapper swapper = new Swapper(fileList);
+        try {
+            swapper.setSwapIds(swapIds);
+        } catch(IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return swapper;
+    }
+    
+    /**
+     * Writes a list of paths as their absolute path strings
+     */
+    static void writePaths(DataOutputStream out, List<Path> paths) throws IOException {
+        out.writeInt(paths.size());
+        for(Path path : paths) {
+            out.writeUTF(path.toAbsolutePath().toString());
+        }
+    }
+    
+    /**
+     * Reads a list of paths written by writePaths
+     */
+    static List<Path> readPaths(DataInputStream in, FileSystem fs) throws IOException {
+        int count = in.readInt();
+        List<Path> paths = new ArrayList<Path>(count);
+        for(int i = 0; i < count; i++) {
+            paths.add(fs.getPath(in.readUTF()));
+        }
+        return paths;
+    }
+    
+    private static void writeOk(DataOutputStream out) throws IOException {
+        out.writeBoolean(true);
+    }
+    
+    private static void writeError(DataOutputStream out, String message) throws IOException {
+        out.writeBoolean(false);
+        writeMessage(out, message == null ? "Unknown error" : message);
+    }
+    
+    /**
+     * Writes a message as a length prefixed UTF-8 byte array. Unlike
+     * writeUTF, this is not limited to 65535 bytes, so error messages that
+     * list every file of a large swap are sent in full.
+     */
+    static void writeMessage(DataOutputStream out, String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    /**
+     * Reads a message written by writeMessage
+     * @throws IOException if the message length is not valid
+     */
+    static String readMessage(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0 || length > MAX_MESSAGE_LENGTH) {
+            throw new IOException("Invalid daemon message length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Forwards swaps to a running swapf Daemon
+ * @author Sam Malone
+ */
+public class DaemonClient {
+    
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    
+    private final int port;
+    private final String token;
+    
+    private DaemonClient(int port, String token) {
+        this.port = port;
+        this.token = token;
+    }
+    
+    /**
+     * Finds the running daemon advertised in the daemon state file
+     * @return client for the running daemon or null if no daemon is running
+     */
+    public static DaemonClient find() {
+        Path stateFile = Daemon.getStateFile();
+        if(!Files.isReadable(stateFile)) {
+            return null;
+        }
+        try {
+            List<String> state = Files.readAllLines(stateFile, StandardCharsets.UTF_8);
+            DaemonClient client = new DaemonClient(Integer.parseInt(state.get(0).trim()), state.get(1).trim());
+            try (Request request = client.open(Daemon.PING)) {
+                request.readStatus();
+            }
+            return client;
+        } catch(IOException e) {
+            return null;
+        } catch(RuntimeException e) {
+            // a malformed state file is treated the same as no daemon
+            return null;
+        }
+    }
+    
+    /**
+     * Resolves and validates the input FILE arguments on the daemon
+     * @param workingDir Directory to resolve relative FILE arguments against
+     * @param fileArgs Input FILE arguments
+     * @return input FILE list
+     * @throws IOException if the arguments are not valid or the daemon could
+     * not be reached
+     */
+    public List<Path> list(Path workingDir, List<String> fileArgs) throws IOException {
+        try (Request request = open(Daemon.LIST)) {
+            request.out.writeUTF(workingDir.toAbsolutePath().toString());
+            request.out.writeInt(fileArgs.size());
+            for(String arg : fileArgs) {
+                request.out.writeUTF(arg);
+            }
+            request.readStatus();
+            return Daemon.readPaths(request.in, FileSystems.getDefault());
+        }
+    }
+    
+    /**
+     * Validates the given swaps on the daemon
+     * @param fileList Input FILE list
+     * @param swapIds Swap IDs of the input FILE list
+     * @throws IOException if the swaps are not valid or the daemon could not
+     * be reached
+     */
+    public void validate(List<Path> fileList, List<Integer> swapIds) throws IOException {
+        try (Request request = open(Daemon.VALIDATE)) {
+            writeSwaps(request.out, fileList, swapIds);
+            request.readStatus();
+        }
+    }
+    
+    /**
+     * Runs the given swaps on the daemon
+     * @param fileList Input FILE list
+     * @param swapIds Swap IDs of the input FILE list
+     * @param verify true to verify the swapped files
+     * @param durable true to flush the directories of the renamed files
+     * @param rollbackJobs maximum number of cycles to roll back in parallel
+     * if the swap fails
+     * @throws IOException if the swap failed or the daemon could not be
+     * reached
+     */
+    public void swap(List<Path> fileList, List<Integer> swapIds, boolean verify, boolean durable, int rollbackJobs) throws IOException {
+        try (Request request = open(Daemon.SWAP)) {
+            writeSwaps(request.out, fileList, swapIds);
+            request.out.writeBoolean(verify);
+            request.out.writeBoolean(durable);
+            request.out.writeInt(rollbackJobs);
+            request.readStatus();
+        }
+    }
+    
+    private static void writeSwaps(DataOutputStream out, List<Path> fileList, List<Integer> swapIds) throws IOException {
+        Daemon.writePaths(out, fileList);
+        out.writeInt(swapIds.size());
+        for(int id : swapIds) {
+            out.writeInt(id);
+        }
+    }
+    
+    /**
+     * Opens a connection to the daemon and writes the request header
+     * @param command Daemon command
+     * @return open request
+     * @throws IOException if the daemon could not be reached
+     */
+    private Request open(String command) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName(null), port), CONNECT_TIMEOUT_MILLIS);
+            Request request = new Request(socket);
+            request.out.writeUTF(token);
+            request.out.writeUTF(command);
+            return request;
+        } catch(IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * A single request to the daemon
+     */
+    private static class Request implements Closeable {
+        
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        
+        Request(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+        
+        /**
+         * Sends the request and reads the status of the response
+         * @throws IOException if the daemon reported an error or closed the
+         * connection without a response
+         */
+        void readStatus() throws IOException {
+            out.flush();
+            try {
+                if(!in.readBoolean()) {
+                    throw new IOException(Daemon.readMessage(in));
+                }
+            } catch(EOFException e) {
+                throw new IOException("The swapf daemon closed the connection without a response", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the file listings of directories. Each cached directory is
+ * registered with a WatchService and its listing is invalidated as soon as
+ * an entry in the directory is created or deleted, which includes renames.
+ * Watch events are delivered asynchronously, so before a cached listing is
+ * served the last modified time of the directory is also checked, which
+ * catches a change that the WatchService has not reported yet.
+ * The least recently used directories are evicted once the cache is full so
+ * that the number of watches stays bounded.
+ * @author Sam Malone
+ */
+public class DirectoryCache {
+    
+    public static final int DEFAULT_MAX_DIRECTORIES = 1024;
+    
+    /**
+     * Coarsest last modified time granularity of the supported file systems
+     * (FAT). A listing is only trusted once the directory's last modified
+     * time is older than the listing by more than this, otherwise a change
+     * made within the same tick as the listing could go unnoticed.
+     */
+    private static final long MTIME_GRANULARITY_MILLIS = 2000;
+    
+    private final WatchService watcher;
+    private final Map<Path, CachedListing> entries;
+    private final Thread watchThread;
+    
+    /**
+     * Creates a DirectoryCache that holds at most DEFAULT_MAX_DIRECTORIES
+     * @param watcher WatchService to register the cached directories with.
+     * The cache takes ownership of the watcher and closes it on close()
+     */
+    public DirectoryCache(WatchService watcher) {
+        this(watcher, DEFAULT_MAX_DIRECTORIES);
+    }
+    
+    /**
+     * Creates a DirectoryCache
+     * @param watcher WatchService to register the cached directories with.
+     * The cache takes ownership of the watcher and closes it on close()
+     * @param maxDirectories Maximum number of directories to cache
+     */
+    public DirectoryCache(WatchService watcher, final int maxDirectories) {
+        this.watcher = watcher;
+        this.entries = new LinkedHashMap<Path, CachedListing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CachedListing> eldest) {
+                if(size() > maxDirectories) {
+                    eldest.getValue().key.cancel();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.watchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processEvents();
+            }
+        }, "swapf-directory-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+    
+    /**
+     * Lists the files in the given directory. Subdirectories are not
+     * included. The listing is served from the cache if the directory has
+     * not changed since it was last listed, according to both the
+     * WatchService and the last modified time of the directory.
+     * @param dir Directory to list
+     * @return files in dir
+     * @throws IOException if dir could not be listed or watched
+     */
+    public List<Path> list(Path dir) throws IOException {
+        dir = dir.toAbsolutePath().normalize();
+        // read before listing so that any later change gives a different time
+        FileTime modified = Files.getLastModifiedTime(dir);
+        long listedMillis = System.currentTimeMillis();
+        CachedListing entry;
+        long generation;
+        synchronized(entries) {
+            entry = entries.get(dir);
+            if(entry == null) {
+                // register before listing so that no change can be missed
+                WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+                entry = new CachedListing(key);
+                entries.put(dir, entry);
+            }
+            if(entry.files != null && entry.isCurrent(modified)) {
+                return entry.files;
+            }
+            generation = entry.generation;
+        }
+        List<Path> files = Collections.unmodifiableList(new ArrayList<Path>(Args.listFiles(dir)));
+        synchronized(entries) {
+            // only cache the listing if the directory did not change whilst listing
+            if(entry.generation == generation && entries.get(dir) == entry) {
+                entry.files = files;
+                entry.modified = modified;
+                entry.listedMillis = listedMillis;
+            }
+        }
+        return files;
+    }
+    
+    /**
+     * Invalidates the cached listing of the given directory
+     * @param dir Directory to invalidate
+     */
+    public void invalidate(Path dir) {
+        synchronized(entries) {
+            CachedListing entry = entries.get(dir.toAbsolutePath().normalize());
+            if(entry != null) {
+                entry.invalidate();
+            }
+        }
+    }
+    
+    /**
+     * Stops watching the cached directories and clears the cache
+     * @throws IOException if the WatchService could not be closed
+     */
+    public void close() throws IOException {
+        watcher.close();
+        synchronized(entries) {
+            entries.clear();
+        }
+    }
+    
+    /**
+     * Invalidates the listing of each directory that the WatchService
+     * reports a change in, until the WatchService is closed
+     */
+    private void processEvents() {
+        while(true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch(InterruptedException e) {
+                return;
+            } catch(ClosedWatchServiceException e) {
+                return;
+            }
+            // any event, including an overflow, means the listing is stale
+            key.pollEvents();
+            Path dir = (Path) key.watchable();
+            synchronized(entries) {
+                CachedListing entry = entries.get(dir);
+                if(entry != null && entry.key == key) {
+                    entry.invalidate();
+                    if(!key.reset()) {
+                        entries.remove(dir);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * The watch key and cached listing of a directory
+     */
+    private static class CachedListing {
+        
+        private final WatchKey key;
+        private List<Path> files;
+        private FileTime modified;
+        private long listedMillis;
+        private long generation;
+        
+        CachedListing(WatchKey key) {
+            this.key = key;
+        }
+        
+        /**
+         * Checks if the cached listing still matches the directory
+         * @param modified Current last modified time of the directory
+         * @return true if the directory has not been modified since it was
+         * listed and that modification was not too recent to be trusted
+         */
+        boolean isCurrent(FileTime modified) {
+            return modified.equals(this.modified) && modified.toMillis() < listedMillis - MTIME_GRANULARITY_MILLIS;
+        }
+        
+        void invalidate() {
+            files = null;
+            generation++;
+        }
+        
+    }
+    
+}
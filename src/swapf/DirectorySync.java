@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Flushes directories to storage so that renames within them survive a
+ * crash or power loss. Directories are flushed in parallel on a fork-join
+ * pool, so the cost of syncing many directories is close to the cost of
+ * syncing one.
+ * @author Sam Malone
+ */
+public class DirectorySync {
+    
+    private final int parallelism;
+    
+    /**
+     * Creates a DirectorySync that flushes as many directories in parallel
+     * as there are available processors
+     */
+    public DirectorySync() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Creates a DirectorySync
+     * @param parallelism Maximum number of directories to flush in parallel
+     */
+    public DirectorySync(int parallelism) {
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Flushes each of the given directories
+     * @param dirs Directories to flush
+     * @throws IOException if any directory could not be flushed
+     */
+    public void sync(Collection<Path> dirs) throws IOException {
+        if(dirs.isEmpty()) {
+            return;
+        }
+        List<Path> list = new ArrayList<Path>(dirs);
+        IOException[] errors = new IOException[list.size()];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new SyncTask(list, errors, 0, list.size()));
+        } finally {
+            pool.shutdown();
+        }
+        for(IOException e : errors) {
+            if(e != null) {
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Flushes a single directory by forcing a FileChannel opened on it.
+     * Directories can only be opened as channels on POSIX file systems, so
+     * nothing is done for directories on any other file system.
+     * @param dir Directory to flush
+     * @throws IOException if the directory could not be flushed
+     */
+    public static void sync(Path dir) throws IOException {
+        if(!dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch(IOException e) {
+            throw new IOException(String.format("Unable to sync the directory %s", dir.toAbsolutePath()), e);
+        }
+    }
+    
+    /**
+     * Flushes a range of directories by splitting the range in half until
+     * each task only has a single directory to flush
+     */
+    private static class SyncTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Path> dirs;
+        private final IOException[] errors;
+        private final int start;
+        private final int end;
+        
+        SyncTask(List<Path> dirs, IOException[] errors, int start, int end) {
+            this.dirs = dirs;
+            this.errors = errors;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if(end - start == 1) {
+                try {
+                    sync(dirs.get(start));
+                } catch(IOException e) {
+                    errors[start] = e;
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new SyncTask(dirs, errors, start, middle), new SyncTask(dirs, errors, middle, end));
+        }
+        
+    }
+    
+}
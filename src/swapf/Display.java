@@ -28,7 +28,7 @@
  */
 package swapf;
 
-import java.io.File;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -43,7 +43,7 @@ public class Display {
      * @param list File list
      * @return Formatted display string e.g. 1) File.Name.ext
      */
-    public static String formattedFileList(List<File> list) {
+    public static String formattedFileList(List<Path> list) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < list.size(); i++) {
             sb.append(numberedFileName(list, i));
@@ -60,9 +60,9 @@ public class Display {
      * @param index File index to display in list (from 0)
      * @return String with display ID and file name e.g. 1) File.Name.ext
      */
-    public static String numberedFileName(List<File> list, int index) {
+    public static String numberedFileName(List<Path> list, int index) {
         int padWidth = String.valueOf(list.size()).length();
-        return String.format("%" + padWidth + "s) %s", String.valueOf(index+1), list.get(index).getName());
+        return String.format("%" + padWidth + "s) %s", String.valueOf(index+1), list.get(index).getFileName());
     }
     
     /**
@@ -72,7 +72,7 @@ public class Display {
      * @param index File index to display in list (from 0)
      * @param message error message to display
      */
-    public static void displayPromptIdsError(List<File> fileList, int index, String message) {
+    public static void displayPromptIdsError(List<Path> fileList, int index, String message) {
         System.out.println(message);
         displayPromptForId(fileList, index);
     }
@@ -82,7 +82,7 @@ public class Display {
      * @param fileList File List
      * @param index File index to display in list (from 0)
      */
-    public static void displayPromptForId(List<File> fileList, int index) {
+    public static void displayPromptForId(List<Path> fileList, int index) {
         System.out.print(numberedFileName(fileList, index));
         System.out.print(" => ");
     }
@@ -91,12 +91,21 @@ public class Display {
      * Print the help message
      */
     public static void printHelp() {
-        System.out.println("Usage: swapf [-h] FILE...");
+        System.out.println("Usage: swapf [-h] [-p] [-n] [--latency=MS] [-v] [-d] [--rollback-jobs=N] [--no-daemon] FILE...\n       swapf --daemon");
         System.out.println("Swap the filenames of the input FILEs.");
         System.out.println("This program is interactive. It will list the input files");
         System.out.println("with an ID, and prompt for each FILE - which ID's to swap with.");
         System.out.println();
         System.out.println("   -h      Displays this message and exits");
+        System.out.println("   -p      Reports the rename progress on stderr");
+        System.out.println("   -n      Rehearses the swaps in memory without renaming any files");
+        System.out.println("   -v      Verifies that no swapped file was lost or corrupted");
+        System.out.println("   -d      Flushes the renames to storage at the end of each rename phase");
+        System.out.println();
+        System.out.println("   --latency=MS       Delays each file system operation of a dry run by MS milliseconds");
+        System.out.println("   --rollback-jobs=N  Rolls back up to N independent groups of swaps in parallel");
+        System.out.println("   --daemon           Runs a resident daemon that runs the swaps of other swapf runs");
+        System.out.println("   --no-daemon        Runs the swaps in this process even if a daemon is running");
     }
     
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * The size, last modified time and content hash of a file at the time it
+ * was digested
+ * @author Sam Malone
+ */
+public class FileDigest {
+    
+    private final Path path;
+    private final long size;
+    private final FileTime lastModifiedTime;
+    private final long hash;
+    
+    public FileDigest(Path path, long size, FileTime lastModifiedTime, long hash) {
+        this.path = path;
+        this.size = size;
+        this.lastModifiedTime = lastModifiedTime;
+        this.hash = hash;
+    }
+
+    /**
+     * Get the path of the file that was digested
+     * @return path of the digested file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Get the size of the file in bytes
+     * @return size of the file
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the last modified time of the file
+     * @return last modified time
+     */
+    public FileTime getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    /**
+     * Get the hash of the file content
+     * @return content hash
+     */
+    public long getHash() {
+        return hash;
+    }
+    
+    /**
+     * Gets a description of how the given digest differs from this digest
+     * @param other Digest to compare with
+     * @return description of the differences e.g. "size, content" or null
+     * if the size, last modified time and hash are all equal
+     */
+    public String describeDifferences(FileDigest other) {
+        StringBuilder sb = new StringBuilder();
+        if(size != other.size) {
+            sb.append("size, ");
+        }
+        if(!lastModifiedTime.equals(other.lastModifiedTime)) {
+            sb.append("modified time, ");
+        }
+        if(hash != other.hash) {
+            sb.append("content, ");
+        }
+        return sb.length() == 0 ? null : sb.substring(0, sb.length() - 2);
+    }
+    
+}
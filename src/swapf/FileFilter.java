@@ -28,17 +28,20 @@
  */
 package swapf;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  *
  * @author Sam Malone
  */
-public class FileFilter implements java.io.FileFilter {
+public class FileFilter implements DirectoryStream.Filter<Path> {
 
     @Override
-    public boolean accept(File pathname) {
-        return !pathname.isDirectory();
+    public boolean accept(Path entry) throws IOException {
+        return !Files.isDirectory(entry);
     }
     
 }
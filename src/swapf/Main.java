@@ -28,8 +28,18 @@
  */
 package swapf;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import swapf.memfs.MemoryFileSystem;
 
 /**
  *
@@ -41,24 +51,67 @@ public class Main {
      * @param args the command line arguments
      */
     public static void main(String[] args) {
-        Args arguments = Args.parse(args);
+        Args arguments = null;
+        try {
+            arguments = Args.parse(args);
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
         if(arguments == null) {
             Display.printHelp();
             System.exit(0);
         }
+        if(arguments.isDaemon()) {
+            runDaemon();
+            return;
+        }
+        // progress and dry runs are only available in process
+        DaemonClient client = null;
+        if(!arguments.isDaemonDisabled() && !arguments.isProgressEnabled() && !arguments.isDryRun()) {
+            client = DaemonClient.find();
+        }
+        Path workingDir = Paths.get("").toAbsolutePath();
         try {
-            Args.validate(arguments);
-        } catch(FileNotFoundException e) {
+            if(client != null) {
+                arguments.setFileList(client.list(workingDir, arguments.getFileArgs()));
+            } else {
+                arguments.resolveFileList(workingDir, null);
+                Args.validate(arguments);
+            }
+        } catch(IOException e) {
             System.err.println(e.getMessage());
             System.exit(1);
         }
+        if(arguments.isDryRun()) {
+            try {
+                arguments.setFileList(mirror(arguments.getFileList(), new MemoryFileSystem(arguments.getLatencyMillis(), TimeUnit.MILLISECONDS)));
+            } catch(IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
         System.out.print(Display.formattedFileList(arguments.getFileList()));
         System.out.println("\nEnter the ID of the filename to swap (blank to ignore):\n");
         Swapper s = new Swapper(arguments.getFileList());
+        if(arguments.isProgressEnabled()) {
+            s.setProgressReporter(new ProgressReporter());
+        }
+        if(arguments.isVerifyEnabled()) {
+            s.setVerifier(new Verifier());
+        }
+        if(arguments.isDurable()) {
+            s.setDirectorySync(new DirectorySync());
+        }
+        s.setRollbackParallelism(arguments.getRollbackJobs());
         s.promptIds();
         System.out.println();
         try {
-            s.validateSwaps();
+            if(client != null) {
+                client.validate(s.getFileList(), s.getSwapIds());
+            } else {
+                s.validateSwaps();
+            }
         } catch(IOException e) {
             System.err.println(e.getMessage());
             System.exit(1);
@@ -70,10 +123,81 @@ public class Main {
             System.exit(0);
         }
         try {
-            s.swap();
+            if(client != null) {
+                client.swap(s.getFileList(), s.getSwapIds(), arguments.isVerifyEnabled(), arguments.isDurable(), arguments.getRollbackJobs());
+            } else {
+                s.swap();
+            }
+        } catch(IOException e) {
+            System.err.println(e.getMessage());
+        }
+        if(arguments.isDryRun()) {
+            System.out.println("Dry run complete. No files were renamed.");
+        }
+    }
+    
+    /**
+     * Runs a swapf daemon until the process is terminated
+     */
+    private static void runDaemon() {
+        if(DaemonClient.find() != null) {
+            System.err.println("A swapf daemon is already running");
+            System.exit(1);
+        }
+        try {
+            new Daemon().run();
         } catch(IOException e) {
             System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Mirrors the directories containing the given files into the given
+     * file system. Only the entry names are mirrored, so every mirrored
+     * file is empty. This allows the swaps to be rehearsed, including any
+     * conflicts with existing file names, without renaming the input files.
+     * Directories are normalized so that a directory given through
+     * different paths is only mirrored once.
+     * @param list Files to mirror the directories of
+     * @param fs File system to mirror the directories into
+     * @return The given files as paths in fs
+     * @throws IOException if a directory could not be listed or mirrored
+     */
+    private static List<Path> mirror(List<Path> list, FileSystem fs) throws IOException {
+        List<Path> mirrored = new ArrayList<Path>(list.size());
+        Set<Path> mirroredDirs = new HashSet<Path>();
+        for(Path file : list) {
+            Path dir = file.toAbsolutePath().normalize().getParent();
+            Path target = fs.getPath(fs.getSeparator());
+            String root = dir.getRoot().toString().replaceAll("[\\\\/:]", "");
+            if(!root.isEmpty()) {
+                target = target.resolve(root);
+            }
+            for(Path name : dir) {
+                target = target.resolve(name.toString());
+            }
+            if(mirroredDirs.add(dir)) {
+                try {
+                    Files.createDirectories(target);
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                        for(Path entry : stream) {
+                            Path mirroredEntry = target.resolve(entry.getFileName().toString());
+                            if(Files.isDirectory(entry)) {
+                                // may already have been mirrored for an input in a subdirectory
+                                Files.createDirectories(mirroredEntry);
+                            } else {
+                                Files.createFile(mirroredEntry);
+                            }
+                        }
+                    }
+                } catch(IOException e) {
+                    throw new IOException(String.format("Unable to mirror the directory %s into memory for the dry run", dir), e);
+                }
+            }
+            mirrored.add(target.resolve(file.getFileName().toString()));
         }
+        return mirrored;
     }
     
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically reports the progress of a rename phase. The number of
+ * completed operations is held in an atomic counter so that it can be
+ * incremented from any number of worker threads without locking. A
+ * background thread samples the counter at a fixed interval and prints
+ * the count, throughput and estimated time remaining.
+ * @author Sam Malone
+ */
+public class ProgressReporter {
+    
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+    
+    private final PrintStream out;
+    private final long intervalMillis;
+    private final AtomicLong completed;
+    private volatile String phase;
+    private volatile long total;
+    private volatile long phaseStartNanos;
+    private ScheduledExecutorService scheduler;
+    
+    /**
+     * Creates a ProgressReporter that prints to stderr every
+     * DEFAULT_INTERVAL_MILLIS milliseconds.
+     */
+    public ProgressReporter() {
+        this(System.err, DEFAULT_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Creates a ProgressReporter
+     * @param out Stream to print the progress to
+     * @param intervalMillis Interval between progress reports in milliseconds
+     */
+    public ProgressReporter(PrintStream out, long intervalMillis) {
+        this.out = out;
+        this.intervalMillis = intervalMillis;
+        this.completed = new AtomicLong();
+    }
+    
+    /**
+     * Starts reporting a new phase. Any phase currently being reported will
+     * be ended first.
+     * @param phase Name of the phase e.g. "temp"
+     * @param total Total number of operations in the phase
+     */
+    public synchronized void startPhase(String phase, long total) {
+        if(scheduler != null) {
+            endPhase();
+        }
+        this.phase = phase;
+        this.total = total;
+        this.phaseStartNanos = System.nanoTime();
+        completed.set(0);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "swapf-progress");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Records a completed operation in the current phase. This is safe to
+     * call from multiple threads.
+     */
+    public void increment() {
+        completed.incrementAndGet();
+    }
+    
+    /**
+     * Stops reporting the current phase and prints a final report for it.
+     * A periodic report that is already being printed is waited for so that
+     * the final report is always the last line printed for the phase.
+     * Does nothing if no phase is being reported.
+     */
+    public synchronized void endPhase() {
+        if(scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        report();
+    }
+    
+    /**
+     * Prints the progress of the current phase
+     */
+    private void report() {
+        long elapsedNanos = System.nanoTime() - phaseStartNanos;
+        out.println(format(phase, completed.get(), total, elapsedNanos));
+    }
+    
+    /**
+     * Gets a formatted progress line
+     * @param phase Name of the phase
+     * @param done Number of completed operations
+     * @param total Total number of operations
+     * @param elapsedNanos Time elapsed since the phase started in nanoseconds
+     * @return Formatted progress line e.g.
+     * temp: 120/500 (24%) 40.0 ops/s ETA 00:00:09
+     */
+    public static String format(String phase, long done, long total, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        double rate = seconds > 0 ? done / seconds : 0;
+        long percent = total > 0 ? done * 100 / total : 100;
+        String eta = rate > 0 ? formatDuration((long) ((total - done) / rate)) : "--:--:--";
+        return String.format("%s: %d/%d (%d%%) %.1f ops/s ETA %s", phase, done, total, percent, rate, eta);
+    }
+    
+    /**
+     * Formats the given number of seconds as hh:mm:ss
+     * @param seconds Number of seconds
+     * @return Formatted duration
+     */
+    private static String formatDuration(long seconds) {
+        return String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+    
+}
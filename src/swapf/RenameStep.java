@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.nio.file.Path;
+
+/**
+ * A completed rename of a file from its source to its destination
+ * @author Sam Malone
+ */
+public class RenameStep {
+    
+    private final Path source;
+    private final Path destination;
+    private final int cycle;
+    
+    /**
+     * Creates a RenameStep
+     * @param source Path the file was renamed from
+     * @param destination Path the file was renamed to
+     * @param cycle ID of the swap cycle the rename belongs to. Renames in
+     * different cycles never depend on each other.
+     */
+    public RenameStep(Path source, Path destination, int cycle) {
+        this.source = source;
+        this.destination = destination;
+        this.cycle = cycle;
+    }
+
+    /**
+     * Get the path the file was renamed from
+     * @return source path
+     */
+    public Path getSource() {
+        return source;
+    }
+
+    /**
+     * Get the path the file was renamed to
+     * @return destination path
+     */
+    public Path getDestination() {
+        return destination;
+    }
+
+    /**
+     * Get the ID of the swap cycle the rename belongs to
+     * @return cycle ID
+     */
+    public int getCycle() {
+        return cycle;
+    }
+
+    @Override
+    public String toString() {
+        return source.toAbsolutePath() + " => " + destination.toAbsolutePath();
+    }
+    
+}
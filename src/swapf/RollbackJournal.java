@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Records each completed rename of a swap so that a failed swap can be
+ * rolled back by undoing exactly those renames in reverse order. No file
+ * is probed before it is restored; a rename is simply moved back and any
+ * failure is recorded in the RollbackReport.
+ * @author Sam Malone
+ */
+public class RollbackJournal {
+    
+    private final List<RenameStep> steps;
+    
+    public RollbackJournal() {
+        steps = new ArrayList<RenameStep>();
+    }
+    
+    /**
+     * Records a completed rename
+     * @param source Path the file was renamed from
+     * @param destination Path the file was renamed to
+     * @param cycle ID of the swap cycle the rename belongs to
+     */
+    public synchronized void record(Path source, Path destination, int cycle) {
+        steps.add(new RenameStep(source, destination, cycle));
+    }
+    
+    /**
+     * Gets the recorded renames in the order they were completed
+     * @return recorded renames
+     */
+    public synchronized List<RenameStep> getSteps() {
+        return new ArrayList<RenameStep>(steps);
+    }
+    
+    /**
+     * Undoes every recorded rename in reverse order
+     * @return report of the renames that could not be undone
+     */
+    public RollbackReport rollback() {
+        return rollback(1);
+    }
+    
+    /**
+     * Undoes every recorded rename. The renames of each swap cycle are
+     * undone in reverse order. Different cycles never share a file name, so
+     * when parallelism is greater than 1 the cycles are undone in parallel.
+     * The journal is empty once rolled back.
+     * @param parallelism Maximum number of cycles to undo in parallel
+     * @return report of the renames that could not be undone
+     */
+    public RollbackReport rollback(int parallelism) {
+        List<List<RenameStep>> groups = new ArrayList<List<RenameStep>>();
+        synchronized(this) {
+            if(parallelism <= 1) {
+                groups.add(new ArrayList<RenameStep>(steps));
+            } else {
+                Map<Integer, List<RenameStep>> cycles = new LinkedHashMap<Integer, List<RenameStep>>();
+                for(RenameStep step : steps) {
+                    List<RenameStep> cycle = cycles.get(step.getCycle());
+                    if(cycle == null) {
+                        cycle = new ArrayList<RenameStep>();
+                        cycles.put(step.getCycle(), cycle);
+                    }
+                    cycle.add(step);
+                }
+                groups.addAll(cycles.values());
+            }
+            steps.clear();
+        }
+        Result[] results = new Result[groups.size()];
+        if(groups.size() == 1) {
+            results[0] = undo(groups.get(0));
+        } else if(groups.size() > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new UndoTask(groups, results, 0, groups.size()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        int restored = 0;
+        List<RollbackReport.Failure> failures = new ArrayList<RollbackReport.Failure>();
+        for(Result result : results) {
+            restored += result.restored;
+            failures.addAll(result.failures);
+        }
+        return new RollbackReport(restored, failures);
+    }
+    
+    /**
+     * Undoes the given renames in reverse order. If a rename cannot be
+     * undone, its file is left at the destination and its source stays
+     * empty. Any earlier rename that depends on either path is then not
+     * attempted and is reported as a failure instead.
+     * @param group Renames in the order they were completed
+     * @return outcome of undoing the renames
+     */
+    private static Result undo(List<RenameStep> group) {
+        Result result = new Result();
+        Set<Path> occupied = new HashSet<Path>();
+        Set<Path> vacant = new HashSet<Path>();
+        for(int i = group.size() - 1; i >= 0; i--) {
+            RenameStep step = group.get(i);
+            try {
+                if(occupied.contains(step.getSource())) {
+                    throw new IOException(String.format("%s is still occupied by a file that could not be restored", step.getSource().toAbsolutePath()));
+                }
+                if(vacant.contains(step.getDestination())) {
+                    throw new IOException(String.format("the file renamed from %s could not be restored there", step.getDestination().toAbsolutePath()));
+                }
+                move(step.getDestination(), step.getSource());
+                result.restored++;
+            } catch(IOException e) {
+                occupied.add(step.getDestination());
+                vacant.add(step.getSource());
+                result.failures.add(new RollbackReport.Failure(step, e));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Moves a file back to where it was renamed from
+     * @param file File to move
+     * @param target Path to move the file to
+     * @throws IOException if the file does not exist, the target already
+     * exists or the move failed
+     */
+    private static void move(Path file, Path target) throws IOException {
+        try {
+            Files.move(file, target);
+        } catch(FileAlreadyExistsException e) {
+            throw new IOException(String.format("%s already exists", target.toAbsolutePath()), e);
+        } catch(NoSuchFileException e) {
+            throw new IOException(String.format("%s does not exist", file.toAbsolutePath()), e);
+        }
+    }
+    
+    /**
+     * The outcome of undoing a group of renames
+     */
+    private static class Result {
+        
+        private int restored;
+        private final List<RollbackReport.Failure> failures = new ArrayList<RollbackReport.Failure>();
+        
+    }
+    
+    /**
+     * Undoes a range of rename groups by splitting the range in half until
+     * each task only has a single group to undo
+     */
+    private static class UndoTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final List<List<RenameStep>> groups;
+        private final Result[] results;
+        private final int start;
+        private final int end;
+        
+        UndoTask(List<List<RenameStep>> groups, Result[] results, int start, int end) {
+            this.groups = groups;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if(end - start == 1) {
+                results[start] = undo(groups.get(start));
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new UndoTask(groups, results, start, middle), new UndoTask(groups, results, middle, end));
+        }
+        
+    }
+    
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of rolling back a RollbackJournal
+ * @author Sam Malone
+ */
+public class RollbackReport {
+    
+    private final int restoredCount;
+    private final List<Failure> failures;
+    
+    public RollbackReport(int restoredCount, List<Failure> failures) {
+        this.restoredCount = restoredCount;
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Get the number of renames that were undone
+     * @return number of renames undone
+     */
+    public int getRestoredCount() {
+        return restoredCount;
+    }
+
+    /**
+     * Get the renames that could not be undone, in the order they were
+     * attempted
+     * @return renames that could not be undone
+     */
+    public List<Failure> getFailures() {
+        return failures;
+    }
+    
+    /**
+     * Checks if every rename was undone
+     * @return true if every rename was undone, false otherwise
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        if(isComplete()) {
+            return String.format("All %d renamed files were rolled back", restoredCount);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d of %d renamed files could not be rolled back:", failures.size(), restoredCount + failures.size()));
+        for(Failure failure : failures) {
+            sb.append(String.format("\n%s could not be restored to %s: %s", failure.getStep().getDestination().toAbsolutePath(), failure.getStep().getSource().toAbsolutePath(), failure.getCause().getMessage()));
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * A rename that could not be undone
+     */
+    public static class Failure {
+        
+        private final RenameStep step;
+        private final IOException cause;
+        
+        public Failure(RenameStep step, IOException cause) {
+            this.step = step;
+            this.cause = cause;
+        }
+
+        /**
+         * Get the rename that could not be undone
+         * @return rename step
+         */
+        public RenameStep getStep() {
+            return step;
+        }
+
+        /**
+         * Get the reason the rename could not be undone
+         * @return cause
+         */
+        public IOException getCause() {
+            return cause;
+        }
+        
+    }
+    
+}
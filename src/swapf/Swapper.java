@@ -29,11 +29,16 @@
 package swapf;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  *
@@ -45,69 +50,308 @@ public class Swapper {
     public static final int EMPTY_INPUT = -2;
     public static final int DUPLICATE_SWAP_ID = -3;
     
-    private List<File> fileList;
+    private List<Path> fileList;
     private List<Integer> swapIds;
     private TempFile tempFile;
+    private ProgressReporter progress;
+    private Verifier verifier;
+    private DirectorySync directorySync;
+    private Set<Path> touchedDirs;
+    private int rollbackParallelism;
     
-    public Swapper(List<File> list) {
+    public Swapper(List<Path> list) {
         this.fileList = list;
         swapIds = new ArrayList<Integer>(list.size());
         tempFile = new TempFile();
+        touchedDirs = new HashSet<Path>();
+        rollbackParallelism = 1;
     }
     
     /**
-     * Swaps all the files in fileList with the user entered swapIds
+     * Gets the files that can be swapped
+     * @return file list
+     */
+    public List<Path> getFileList() {
+        return fileList;
+    }
+    
+    /**
+     * Gets the swap IDs entered for each file in the file list
+     * @return list index of the file to swap each file with or EMPTY_INPUT
+     */
+    public List<Integer> getSwapIds() {
+        return Collections.unmodifiableList(swapIds);
+    }
+    
+    /**
+     * Sets the swap IDs for each file in the file list instead of prompting
+     * the user for them
+     * @param swapIds list index of the file to swap each file with or
+     * EMPTY_INPUT
+     * @throws IllegalArgumentException if there is not a swap ID for each
+     * file, or an ID is not a valid list index or is used more than once
+     */
+    public void setSwapIds(List<Integer> swapIds) {
+        if(swapIds.size() != fileList.size()) {
+            throw new IllegalArgumentException("There must be a swap ID for each file");
+        }
+        Set<Integer> used = new HashSet<Integer>();
+        for(int id : swapIds) {
+            if(id == EMPTY_INPUT) {
+                continue;
+            }
+            if(id < 0 || id >= fileList.size()) {
+                throw new IllegalArgumentException("Invalid filename ID " + (id + 1));
+            }
+            if(!used.add(id)) {
+                throw new IllegalArgumentException("The filename ID " + (id + 1) + " is used more than once");
+            }
+        }
+        this.swapIds = new ArrayList<Integer>(swapIds);
+    }
+    
+    /**
+     * Sets the reporter to report the progress of the rename phases to
+     * @param progress ProgressReporter or null to disable reporting
+     */
+    public void setProgressReporter(ProgressReporter progress) {
+        this.progress = progress;
+    }
+    
+    /**
+     * Sets the verifier used to check that no files were lost or corrupted
+     * by the swap
+     * @param verifier Verifier or null to disable verification
+     */
+    public void setVerifier(Verifier verifier) {
+        this.verifier = verifier;
+    }
+    
+    /**
+     * Sets the DirectorySync used to flush the directories containing the
+     * renamed files at the end of each rename phase. Each directory is only
+     * flushed once per phase no matter how many files in it were renamed.
+     * @param directorySync DirectorySync or null to disable flushing
+     */
+    public void setDirectorySync(DirectorySync directorySync) {
+        this.directorySync = directorySync;
+    }
+    
+    /**
+     * Sets the maximum number of swap cycles to roll back in parallel if a
+     * swap fails. By default every rename is undone in reverse order, one
+     * at a time.
+     * @param rollbackParallelism maximum number of cycles to roll back in
+     * parallel
+     * @throws IllegalArgumentException if rollbackParallelism is less than 1
+     */
+    public void setRollbackParallelism(int rollbackParallelism) {
+        if(rollbackParallelism < 1) {
+            throw new IllegalArgumentException("The rollback parallelism must be at least 1");
+        }
+        this.rollbackParallelism = rollbackParallelism;
+    }
+    
+    /**
+     * Swaps all the files in fileList with the user entered swapIds. If a
+     * Verifier has been set, the files to be swapped are digested before
+     * renaming and checked against their digest once swapped.
      * @throws IOException if there is an error when swapping the
      * files.
+     * @throws RollbackException if a file could not be renamed, or the
+     * temporary renames could not be flushed, once the completed renames
+     * have been rolled back
+     * @throws IOException if verification is enabled and any swapped file
+     * differs from its digest
+     * @throws IOException if every file was swapped but the destination
+     * renames could not be flushed. Verification is still run first.
      */
     public void swap() throws IOException {
         assertFilesToSwapWritable();
-        renameToTemp();
-        renameToDestination();
+        List<FileDigest> digests = null;
+        if(verifier != null) {
+            digests = verifier.digest(getSwapSources());
+        }
+        RollbackJournal journal = new RollbackJournal();
+        int[] cycles = getSwapCycles();
+        renameToTemp(journal, cycles);
+        try {
+            syncTouchedDirectories();
+        } catch(IOException e) {
+            throw rollback(journal, new IOException("Unable to flush the renames to the temporary files to storage: " + e.getMessage(), e));
+        }
+        renameToDestination(journal, cycles);
+        IOException syncError = null;
+        try {
+            syncTouchedDirectories();
+        } catch(IOException e) {
+            // the swap is complete so there is nothing to roll back
+            syncError = new IOException("The files were swapped but the renames could not be flushed to storage, so they may not survive a crash: " + e.getMessage(), e);
+        }
+        if(verifier != null) {
+            try {
+                verifier.verify(digests, getSwapDestinations());
+            } catch(IOException e) {
+                if(syncError != null) {
+                    throw new IOException(e.getMessage() + "\n" + syncError.getMessage(), e);
+                }
+                throw e;
+            }
+        }
+        if(syncError != null) {
+            throw syncError;
+        }
     }
     
     /**
-     * Renames each file in fileList that is to be swapped, from its  
-     * temporary location to its destination. If there is an error when
-     * renaming, an attempt will be made to roll back the files to their 
-     * existing location
-     * @throws IOException if there was an error moving a temporary file to
-     * its destination
+     * Gets the files in fileList that are to be swapped
+     * @return files to be swapped
      */
-    private void renameToDestination() throws IOException {
+    private List<Path> getSwapSources() {
+        List<Path> sources = new ArrayList<Path>();
         for(int i = 0; i < swapIds.size(); i++) {
             if(swapIds.get(i) != EMPTY_INPUT) {
-                File tmp = tempFile.getTempFile(fileList.get(i));
-                try {
-                    renameFileName(tmp, fileList.get(swapIds.get(i)).getName());
-                } catch(IOException e) {
-                    rollbackToTemp(i);
-                    rollbackTemp(fileList.size());
-                    throw e;
+                sources.add(fileList.get(i));
+            }
+        }
+        return sources;
+    }
+    
+    /**
+     * Gets the destination of each file in fileList that is to be swapped,
+     * in the same order as getSwapSources()
+     * @return destinations of the files to be swapped
+     */
+    private List<Path> getSwapDestinations() {
+        List<Path> destinations = new ArrayList<Path>();
+        for(int i = 0; i < swapIds.size(); i++) {
+            if(swapIds.get(i) != EMPTY_INPUT) {
+                destinations.add(fileList.get(i).toAbsolutePath().resolveSibling(fileList.get(swapIds.get(i)).getFileName().toString()));
+            }
+        }
+        return destinations;
+    }
+    
+    /**
+     * Gets the ID of the swap cycle that each file in fileList belongs to.
+     * Following the swap IDs from a file to be swapped always leads back to
+     * that file, so the files form disjoint cycles and the renames in one
+     * cycle never depend on the renames in another.
+     * @return cycle ID of each file or -1 if the file is not to be swapped
+     */
+    private int[] getSwapCycles() {
+        int[] cycles = new int[swapIds.size()];
+        Arrays.fill(cycles, -1);
+        int cycle = 0;
+        for(int i = 0; i < swapIds.size(); i++) {
+            if(swapIds.get(i) != EMPTY_INPUT && cycles[i] == -1) {
+                for(int j = i; j != EMPTY_INPUT && cycles[j] == -1; j = swapIds.get(j)) {
+                    cycles[j] = cycle;
                 }
+                cycle++;
             }
         }
+        return cycles;
+    }
+    
+    /**
+     * Renames each file in fileList that is to be swapped, from its  
+     * temporary location to its destination. If there is an error when
+     * renaming, every rename recorded in the journal will be rolled back
+     * @param journal Journal to record each rename in
+     * @param cycles Swap cycle ID of each file
+     * @throws RollbackException if there was an error moving a temporary
+     * file to its destination
+     */
+    private void renameToDestination(RollbackJournal journal, int[] cycles) throws IOException {
+        startProgress("destination");
+        try {
+            for(int i = 0; i < swapIds.size(); i++) {
+                if(swapIds.get(i) != EMPTY_INPUT) {
+                    Path tmp = tempFile.getTempFile(fileList.get(i));
+                    try {
+                        Path dest = renameFileName(tmp, fileList.get(swapIds.get(i)).getFileName().toString());
+                        journal.record(tmp.toAbsolutePath(), dest, cycles[i]);
+                    } catch(IOException e) {
+                        throw rollback(journal, e);
+                    }
+                    incrementProgress();
+                }
+            }
+        } finally {
+            endProgress();
+        }
     }
       
     /**
      * Renames each file in fileList that is to be swapped, to a temporary 
      * location in the same directory as the original file and its file
      * name will also be based on the original file. If there is an error
-     * when renaming, then an attempt will be made to roll back the files
-     * to their existing location
-     * @throws IOException if there was an error when renaming a file to
-     * its temporary location
+     * when renaming, every rename recorded in the journal will be rolled
+     * back
+     * @param journal Journal to record each rename in
+     * @param cycles Swap cycle ID of each file
+     * @throws RollbackException if there was an error when renaming a file
+     * to its temporary location
      */
-    private void renameToTemp() throws IOException {
-        for(int i = 0; i < swapIds.size(); i++) {
-            if(swapIds.get(i) != EMPTY_INPUT) {
-                try {
-                    renameFileName(fileList.get(i), tempFile.getTempFile(fileList.get(i)).getName());
-                } catch(IOException e) {
-                    rollbackTemp(i);
-                    throw e;
+    private void renameToTemp(RollbackJournal journal, int[] cycles) throws IOException {
+        startProgress("temp");
+        try {
+            for(int i = 0; i < swapIds.size(); i++) {
+                if(swapIds.get(i) != EMPTY_INPUT) {
+                    try {
+                        Path tmp = renameFileName(fileList.get(i), tempFile.getTempFile(fileList.get(i)).getFileName().toString());
+                        journal.record(fileList.get(i).toAbsolutePath(), tmp, cycles[i]);
+                    } catch(IOException e) {
+                        throw rollback(journal, e);
+                    }
+                    incrementProgress();
                 }
             }
+        } finally {
+            endProgress();
+        }
+    }
+    
+    /**
+     * Flushes each directory that a file has been renamed in since the last
+     * flush if a DirectorySync has been set
+     * @throws IOException if a directory could not be flushed
+     */
+    private void syncTouchedDirectories() throws IOException {
+        if(directorySync != null) {
+            directorySync.sync(touchedDirs);
+            touchedDirs.clear();
+        }
+    }
+    
+    /**
+     * Starts reporting the progress of a rename phase if a ProgressReporter
+     * has been set
+     * @param phase Name of the rename phase
+     */
+    private void startProgress(String phase) {
+        if(progress != null) {
+            progress.startPhase(phase, getSwapCount());
+        }
+    }
+    
+    /**
+     * Records a completed rename if a ProgressReporter has been set
+     */
+    private void incrementProgress() {
+        if(progress != null) {
+            progress.increment();
+        }
+    }
+    
+    /**
+     * Ends reporting the progress of the current rename phase if a 
+     * ProgressReporter has been set
+     */
+    private void endProgress() {
+        if(progress != null) {
+            progress.endPhase();
         }
     }
     
@@ -116,67 +360,53 @@ public class Swapper {
      * if this doesn't already exist.
      * @param srcFile File to be renamed
      * @param destFileName Filename to rename srcFile to
+     * @return absolute path srcFile was renamed to
      * @throws IOException if the destination file name already exists
      * @throws IOException if write access was not granted to rename
      * @throws IOException if renaming failed
      */
-    private void renameFileName(File srcFile, String destFileName) throws IOException {
-        File destFile = new File(srcFile.getAbsoluteFile().getParentFile(), destFileName);
-        String message = String.format("Unable to rename %s to the destination %s", srcFile.getAbsolutePath(), destFile.getAbsolutePath());
-        if(destFile.exists()) {
+    private Path renameFileName(Path srcFile, String destFileName) throws IOException {
+        Path destFile = srcFile.toAbsolutePath().resolveSibling(destFileName);
+        String message = String.format("Unable to rename %s to the destination %s", srcFile.toAbsolutePath(), destFile);
+        if(Files.exists(destFile)) {
             throw new IOException(message + " because the destination file already exists");
         }
         try {
-            if(!srcFile.renameTo(destFile)) {
-                throw new IOException(message);
+            Files.move(srcFile, destFile);
+            if(directorySync != null) {
+                touchedDirs.add(destFile.getParent());
             }
+        } catch(IOException e) {
+            throw new IOException(message, e);
         } catch(SecurityException e) {
             throw new IOException(message + " because write access was denied to one/both files");
         }
+        return destFile;
     }
     
     /**
-     * Attempts to roll back the file that has been swapped to its temporary 
-     * location.
-     * @param count number of files to roll back. 0 < count <= fileList.size()
+     * Rolls back every rename recorded in the journal after a rename has
+     * failed. The directories of the rolled back renames are flushed if a
+     * DirectorySync has been set.
+     * @param journal Journal of the completed renames
+     * @param cause Error that caused the swap to fail
+     * @return exception describing the error and the outcome of the rollback
      */
-    private void rollbackToTemp(int count) {
-        for(int i = 0; i < count; i++) {
-            if(swapIds.get(i) != EMPTY_INPUT) {
-                File tmp = tempFile.getTempFile(fileList.get(i));
-                rollback(fileList.get(swapIds.get(i)), tmp);
-            }
+    private RollbackException rollback(RollbackJournal journal, IOException cause) {
+        Set<Path> dirs = new HashSet<Path>();
+        for(RenameStep step : journal.getSteps()) {
+            dirs.add(step.getSource().getParent());
         }
-    }
-    
-    /**
-     * Attempts to roll back the temporary files to their original location
-     * @param count number of files to roll back. 0 < count <= fileList.size()
-     */
-    private void rollbackTemp(int count) {
-        for(int i = 0; i < count; i++) {
-            if(swapIds.get(i) != EMPTY_INPUT) {
-                File tmp = tempFile.getTempFile(fileList.get(i));
-                rollback(tmp, fileList.get(i));
-            }
-        }
-    }
-    
-    /**
-     * Attempts to roll back the file that has been swapped to its temporary 
-     * file only if the destination file doesn't exist.
-     */
-    private void rollback(File srcFile, File destFile) {
-        if(destFile.exists()) {
-            return;
-        }
-        if(srcFile.exists()) {
+        RollbackException e = new RollbackException(cause, journal.rollback(rollbackParallelism));
+        if(directorySync != null) {
             try {
-                renameFileName(srcFile, destFile.getName());
-            } catch(IOException e) {
-
+                directorySync.sync(dirs);
+            } catch(IOException syncError) {
+                e.addSuppressed(syncError);
             }
+            touchedDirs.clear();
         }
+        return e;
     }
     
     /**
@@ -189,11 +419,11 @@ public class Swapper {
         for(int i = 0; i < swapIds.size(); i++) {
             if(swapIds.get(i) != EMPTY_INPUT) {
                 String message = "The file %s is not writable";
-                if(!fileList.get(i).canWrite()) {
-                    throw new IOException(String.format(message, fileList.get(i).getAbsolutePath()));
+                if(!Files.isWritable(fileList.get(i))) {
+                    throw new IOException(String.format(message, fileList.get(i).toAbsolutePath()));
                 }
-                if(!fileList.get(i).getAbsoluteFile().getParentFile().canWrite()) {
-                    throw new IOException(String.format(message, fileList.get(i).getAbsoluteFile().getParentFile().getAbsolutePath()));
+                if(!Files.isWritable(fileList.get(i).toAbsolutePath().getParent())) {
+                    throw new IOException(String.format(message, fileList.get(i).toAbsolutePath().getParent()));
                 }
             }
         }
@@ -210,13 +440,13 @@ public class Swapper {
      * @throws IOException if a file already exists that would conflict
      * with the filename swap
      */
-    private void assertSwapDestinationValid(int index, File srcFile, String destFileName) throws IOException {
-        File destFile = new File(srcFile.getAbsoluteFile().getParentFile(), destFileName);
-        if(destFile.exists()) {
-            if(destFile.getAbsoluteFile().equals(fileList.get(swapIds.get(index)).getAbsoluteFile())) {
+    private void assertSwapDestinationValid(int index, Path srcFile, String destFileName) throws IOException {
+        Path destFile = srcFile.toAbsolutePath().resolveSibling(destFileName);
+        if(Files.exists(destFile)) {
+            if(destFile.equals(fileList.get(swapIds.get(index)).toAbsolutePath())) {
                 return;
             }
-            throw new IOException("Swapping filenames could not be completed because " + destFile.getAbsolutePath() + " already exists");
+            throw new IOException("Swapping filenames could not be completed because " + destFile + " already exists");
         }
     }
     
@@ -237,7 +467,7 @@ public class Swapper {
         }
         for(int i = 0; i < swapIds.size(); i++) {
             if(swapIds.get(i) != EMPTY_INPUT) {
-                assertSwapDestinationValid(i, fileList.get(i), fileList.get(swapIds.get(i)).getName());
+                assertSwapDestinationValid(i, fileList.get(i), fileList.get(swapIds.get(i)).getFileName().toString());
             }
         }
     }
@@ -278,6 +508,20 @@ public class Swapper {
         return empty;
     }
     
+    /**
+     * Gets the number of files that are to be swapped
+     * @return number of files to be swapped
+     */
+    public int getSwapCount() {
+        int count = 0;
+        for (int i = 0; i < swapIds.size(); i++) {
+            if (swapIds.get(i) != EMPTY_INPUT) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
     /**
      * Gets the formatted text previews of the files to be swapped
      * @return formatted preview string
@@ -286,9 +530,9 @@ public class Swapper {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < swapIds.size(); i++) {
             if (swapIds.get(i) != EMPTY_INPUT) {
-                sb.append(fileList.get(i).getName());
+                sb.append(fileList.get(i).getFileName());
                 sb.append("\n => ");
-                sb.append(fileList.get(swapIds.get(i)).getName());
+                sb.append(fileList.get(swapIds.get(i)).getFileName());
                 sb.append("\n\n");
             }
         }
@@ -28,7 +28,8 @@
  */
 package swapf;
 
-import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Random;
 
@@ -38,10 +39,10 @@ import java.util.Random;
  */
 public class TempFile {
     
-    private HashMap<File, File> tempFiles;
+    private HashMap<Path, Path> tempFiles;
     
     public TempFile() {
-        tempFiles = new HashMap<File, File>();
+        tempFiles = new HashMap<Path, Path>();
     }
     
     /**
@@ -53,10 +54,10 @@ public class TempFile {
      * @param file File to base temporary file on
      * @return Temporary file that does not exist
      */
-    public File getTempFile(File file) {
+    public Path getTempFile(Path file) {
         if(!tempFiles.containsKey(file)) {
-            File tmpFile;
-            while((tmpFile = new File(file.getParentFile(), generateTempFileName(file))).exists());
+            Path tmpFile;
+            while(Files.exists(tmpFile = file.resolveSibling(generateTempFileName(file))));
             tempFiles.put(file, tmpFile);
         }
         return tempFiles.get(file);
@@ -69,14 +70,15 @@ public class TempFile {
      * @param file File to generate a temporary file name for
      * @return Temporary file name
      */
-    private String generateTempFileName(File file) {
+    private String generateTempFileName(Path file) {
         final String alphabet = "0123456789abcdefghijklmnpqrstuvwxyz";
         final String extension = ".tmp";
         final int tmpFileNameLength = 12;
         Random r = new Random();
+        String fileName = file.getFileName().toString();
         StringBuilder sb;
-            sb = new StringBuilder(file.getName().length() + tmpFileNameLength + extension.length() + 1);
-            sb.append(file.getName());
+            sb = new StringBuilder(fileName.length() + tmpFileNameLength + extension.length() + 1);
+            sb.append(fileName);
             for(int i = 0; i < tmpFileNameLength; i++) {
                 sb.append(alphabet.charAt(r.nextInt(alphabet.length())));
             }
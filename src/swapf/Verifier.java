@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+
+/**
+ * Verifies that files were not lost or corrupted by a swap. Each file is
+ * digested by recording its size, last modified time and a CRC32 of its
+ * content. Files are hashed in parallel on a fork-join pool and are read
+ * through memory mapped buffers when the file system supports it.
+ * @author Sam Malone
+ */
+public class Verifier {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAP_SIZE = 64L * 1024 * 1024;
+    
+    private final int parallelism;
+    
+    /**
+     * Creates a Verifier that hashes as many files in parallel as there are
+     * available processors
+     */
+    public Verifier() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Creates a Verifier
+     * @param parallelism Maximum number of files to hash in parallel
+     */
+    public Verifier(int parallelism) {
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Digests each of the given files
+     * @param files Files to digest
+     * @return digest of each file, in the same order as files
+     * @throws IOException if any file could not be read
+     */
+    public List<FileDigest> digest(List<Path> files) throws IOException {
+        FileDigest[] digests = new FileDigest[files.size()];
+        IOException[] errors = new IOException[files.size()];
+        digestAll(files, digests, errors);
+        for(IOException e : errors) {
+            if(e != null) {
+                throw e;
+            }
+        }
+        List<FileDigest> list = new ArrayList<FileDigest>(digests.length);
+        for(FileDigest digest : digests) {
+            list.add(digest);
+        }
+        return list;
+    }
+    
+    /**
+     * Verifies that each of the given files matches its expected digest
+     * @param expected Expected digest of each file
+     * @param files Files to verify, in the same order as expected
+     * @throws IOException if any file differs from its expected digest or
+     * could not be read
+     */
+    public void verify(List<FileDigest> expected, List<Path> files) throws IOException {
+        FileDigest[] digests = new FileDigest[files.size()];
+        IOException[] errors = new IOException[files.size()];
+        digestAll(files, digests, errors);
+        StringBuilder sb = new StringBuilder();
+        int failures = 0;
+        for(int i = 0; i < files.size(); i++) {
+            String difference;
+            if(errors[i] instanceof NoSuchFileException) {
+                difference = "is missing";
+            } else if(errors[i] != null) {
+                difference = "could not be read: " + errors[i].getMessage();
+            } else {
+                difference = expected.get(i).describeDifferences(digests[i]);
+                if(difference != null) {
+                    difference = "changed " + difference;
+                }
+            }
+            if(difference != null) {
+                failures++;
+                sb.append(String.format("\n%s (previously %s) %s", files.get(i).toAbsolutePath(), expected.get(i).getPath().toAbsolutePath(), difference));
+            }
+        }
+        if(failures > 0) {
+            throw new IOException(String.format("Verification failed for %d file(s):%s", failures, sb));
+        }
+    }
+    
+    /**
+     * Digests each of the given files in parallel. Any file that could not
+     * be read will have its exception recorded instead of its digest.
+     * @param files Files to digest
+     * @param digests Array to store the digest of each file in
+     * @param errors Array to store the error of each file in
+     */
+    private void digestAll(List<Path> files, FileDigest[] digests, IOException[] errors) {
+        if(files.isEmpty()) {
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new DigestTask(files, digests, errors, 0, files.size()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Digests a single file
+     * @param file File to digest
+     * @return digest of file
+     * @throws IOException if the file could not be read
+     */
+    public static FileDigest digest(Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            if(channel instanceof FileChannel) {
+                hashMapped((FileChannel) channel, crc, buffer);
+            } else {
+                hashStream(channel, crc, buffer);
+            }
+        }
+        return new FileDigest(file, attrs.size(), attrs.lastModifiedTime(), crc.getValue());
+    }
+    
+    /**
+     * Updates the CRC with the content of the channel using memory mapped
+     * regions of at most MAP_SIZE bytes
+     */
+    private static void hashMapped(FileChannel channel, CRC32 crc, byte[] buffer) throws IOException {
+        long size = channel.size();
+        for(long position = 0; position < size; position += MAP_SIZE) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position));
+            while(mapped.hasRemaining()) {
+                int count = Math.min(buffer.length, mapped.remaining());
+                mapped.get(buffer, 0, count);
+                crc.update(buffer, 0, count);
+            }
+        }
+    }
+    
+    /**
+     * Updates the CRC with the content of the channel by reading it
+     * sequentially
+     */
+    private static void hashStream(SeekableByteChannel channel, CRC32 crc, byte[] buffer) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        int count;
+        while((count = channel.read(bb)) >= 0) {
+            crc.update(buffer, 0, count);
+            bb.clear();
+        }
+    }
+    
+    /**
+     * Digests a range of files by splitting the range in half until each
+     * task only has a single file to digest
+     */
+    private static class DigestTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Path> files;
+        private final FileDigest[] digests;
+        private final IOException[] errors;
+        private final int start;
+        private final int end;
+        
+        DigestTask(List<Path> files, FileDigest[] digests, IOException[] errors, int start, int end) {
+            this.files = files;
+            this.digests = digests;
+            this.errors = errors;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if(end - start == 1) {
+                try {
+                    digests[start] = digest(files.get(start));
+                } catch(IOException e) {
+                    errors[start] = e;
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new DigestTask(files, digests, errors, start, middle), new DigestTask(files, digests, errors, middle, end));
+        }
+        
+    }
+    
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf.memfs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * SeekableByteChannel over the content of a MemoryNode
+ * @author Sam Malone
+ */
+final class MemoryByteChannel implements SeekableByteChannel {
+    
+    private final MemoryNode node;
+    private final boolean readable;
+    private final boolean writable;
+    private final boolean append;
+    private long position;
+    private volatile boolean open;
+    
+    MemoryByteChannel(MemoryNode node, boolean readable, boolean writable, boolean append) {
+        this.node = node;
+        this.readable = readable;
+        this.writable = writable;
+        this.append = append;
+        this.open = true;
+    }
+    
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        assertOpen();
+        if(!readable) {
+            throw new NonReadableChannelException();
+        }
+        int count = node.read(position, dst);
+        if(count > 0) {
+            position += count;
+        }
+        return count;
+    }
+    
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        assertOpen();
+        if(!writable) {
+            throw new NonWritableChannelException();
+        }
+        synchronized(node) {
+            if(append) {
+                position = node.size();
+            }
+            int count = node.write(position, src);
+            position += count;
+            return count;
+        }
+    }
+    
+    @Override
+    public synchronized long position() throws IOException {
+        assertOpen();
+        return position;
+    }
+    
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        assertOpen();
+        if(newPosition < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        position = newPosition;
+        return this;
+    }
+    
+    @Override
+    public long size() throws IOException {
+        assertOpen();
+        return node.size();
+    }
+    
+    @Override
+    public synchronized SeekableByteChannel truncate(long size) throws IOException {
+        assertOpen();
+        if(size < 0) {
+            throw new IllegalArgumentException("Negative size");
+        }
+        if(!writable) {
+            throw new NonWritableChannelException();
+        }
+        node.truncate(size);
+        position = Math.min(position, size);
+        return this;
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+    
+    @Override
+    public void close() {
+        open = false;
+    }
+    
+    private void assertOpen() throws ClosedChannelException {
+        if(!open) {
+            throw new ClosedChannelException();
+        }
+    }
+    
+}
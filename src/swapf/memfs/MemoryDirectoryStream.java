@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf.memfs;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * DirectoryStream over a snapshot of the entries of a MemoryFileSystem
+ * directory taken when the stream was opened
+ * @author Sam Malone
+ */
+final class MemoryDirectoryStream implements DirectoryStream<Path> {
+    
+    private final List<Path> entries;
+    private boolean iterated;
+    private boolean closed;
+    
+    MemoryDirectoryStream(MemoryPath dir, List<String> names, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        entries = new ArrayList<Path>(names.size());
+        for(String name : names) {
+            Path entry = dir.resolve(name);
+            if(filter == null || filter.accept(entry)) {
+                entries.add(entry);
+            }
+        }
+    }
+    
+    @Override
+    public synchronized Iterator<Path> iterator() {
+        if(closed) {
+            throw new IllegalStateException("Directory stream is closed");
+        }
+        if(iterated) {
+            throw new IllegalStateException("Iterator already obtained");
+        }
+        iterated = true;
+        return new Iterator<Path>() {
+            private int index;
+            
+            @Override
+            public boolean hasNext() {
+                return !closed && index < entries.size();
+            }
+    
+            @Override
+            public Path next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return entries.get(index++);
+            }
+    
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    @Override
+    public synchronized void close() {
+        closed = true;
+    }
+    
+}
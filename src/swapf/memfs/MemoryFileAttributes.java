@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf.memfs;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Snapshot of the basic attributes of a MemoryNode
+ * @author Sam Malone
+ */
+final class MemoryFileAttributes implements BasicFileAttributes {
+    
+    private final MemoryNode node;
+    private final long size;
+    private final FileTime creationTime;
+    private final FileTime lastModifiedTime;
+    private final FileTime lastAccessTime;
+    
+    MemoryFileAttributes(MemoryNode node) {
+        this.node = node;
+        synchronized(node) {
+            this.size = node.size();
+            this.creationTime = node.getCreationTime();
+            this.lastModifiedTime = node.getLastModifiedTime();
+            this.lastAccessTime = node.getLastAccessTime();
+        }
+    }
+    
+    @Override
+    public FileTime lastModifiedTime() {
+        return lastModifiedTime;
+    }
+    
+    @Override
+    public FileTime lastAccessTime() {
+        return lastAccessTime;
+    }
+    
+    @Override
+    public FileTime creationTime() {
+        return creationTime;
+    }
+    
+    @Override
+    public boolean isRegularFile() {
+        return !node.isDirectory();
+    }
+    
+    @Override
+    public boolean isDirectory() {
+        return node.isDirectory();
+    }
+    
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+    
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+    
+    @Override
+    public long size() {
+        return size;
+    }
+    
+    @Override
+    public Object fileKey() {
+        return node;
+    }
+    
+}
@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf.memfs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A FileSystem that holds all of its files in memory. Every file system
+ * operation can be delayed by a fixed latency to simulate slow storage such
+ * as NFS, which allows swaps to be rehearsed and benchmarked without
+ * touching the disk.
+ * @author Sam Malone
+ */
+public class MemoryFileSystem extends FileSystem {
+    
+    private final MemoryFileSystemProvider provider;
+    private final long latencyNanos;
+    private final MemoryNode root;
+    private volatile boolean open;
+    
+    /**
+     * Creates an empty MemoryFileSystem with no latency
+     */
+    public MemoryFileSystem() {
+        this(0, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Creates an empty MemoryFileSystem
+     * @param latency latency to add to each file system operation
+     * @param unit unit of latency
+     */
+    public MemoryFileSystem(long latency, TimeUnit unit) {
+        this(new MemoryFileSystemProvider(), unit.toNanos(latency));
+    }
+    
+    MemoryFileSystem(MemoryFileSystemProvider provider, long latencyNanos) {
+        if(latencyNanos < 0) {
+            throw new IllegalArgumentException("Latency cannot be negative");
+        }
+        this.provider = provider;
+        this.latencyNanos = latencyNanos;
+        this.root = MemoryNode.newDirectory();
+        this.open = true;
+    }
+    
+    /**
+     * Gets the latency added to each file system operation
+     * @param unit unit to return the latency in
+     * @return latency
+     */
+    public long getLatency(TimeUnit unit) {
+        return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    @Override
+    public MemoryFileSystemProvider provider() {
+        return provider;
+    }
+    
+    @Override
+    public void close() {
+        open = false;
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+    
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+    
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+    
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return Collections.<Path>singletonList(getPath("/"));
+    }
+    
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return Collections.emptyList();
+    }
+    
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Collections.singleton("basic");
+    }
+    
+    @Override
+    public Path getPath(String first, String... more) {
+        StringBuilder sb = new StringBuilder(first);
+        for(String name : more) {
+            if(!name.isEmpty()) {
+                sb.append(getSeparator()).append(name);
+            }
+        }
+        return MemoryPath.parse(this, sb.toString());
+    }
+    
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int index = syntaxAndPattern.indexOf(':');
+        if(index <= 0) {
+            throw new IllegalArgumentException("Pattern must be of the form syntax:pattern");
+        }
+        String syntax = syntaxAndPattern.substring(0, index);
+        String pattern = syntaxAndPattern.substring(index + 1);
+        final Pattern regex;
+        if(syntax.equalsIgnoreCase("regex")) {
+            regex = Pattern.compile(pattern);
+        } else if(syntax.equalsIgnoreCase("glob")) {
+            regex = Pattern.compile(globToRegex(pattern));
+        } else {
+            throw new UnsupportedOperationException("Syntax " + syntax + " is not supported");
+        }
+        return new PathMatcher() {
+            @Override
+            public boolean matches(Path path) {
+                return regex.matcher(path.toString()).matches();
+            }
+        };
+    }
+    
+    /**
+     * Converts a glob pattern into a regular expression. Supports *, **, ?,
+     * [...] and {a,b} as described by FileSystem.getPathMatcher
+     * @param glob glob pattern
+     * @return regular expression
+     */
+    private static String globToRegex(String glob) {
+        StringBuilder sb = new StringBuilder();
+        boolean inGroup = false;
+        for(int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch(c) {
+                case '*':
+                    if(i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        sb.append(".*");
+                        i++;
+                    } else {
+                        sb.append("[^/]*");
+                    }
+                    break;
+                case '?': sb.append("[^/]"); break;
+                case '{': sb.append("(?:"); inGroup = true; break;
+                case '}': sb.append(')'); inGroup = false; break;
+                case ',': sb.append(inGroup ? "|" : ","); break;
+                case '[':
+                    int end = glob.indexOf(']', i + 1);
+                    if(end < 0) {
+                        throw new PatternSyntaxException("Missing ']'", glob, i);
+                    }
+                    String range = glob.substring(i + 1, end);
+                    sb.append('[').append(range.startsWith("!") ? "^" + range.substring(1) : range).append(']');
+                    i = end;
+                    break;
+                case '\\':
+                    if(i + 1 < glob.length()) {
+                        sb.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                    break;
+                default: sb.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return sb.toString();
+    }
+    
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("Memory file systems do not support user principals");
+    }
+    
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Memory file systems cannot be watched");
+    }
+    
+    /**
+     * Waits for the configured latency to simulate the cost of a file
+     * system operation. The wait happens before the file system lock is
+     * acquired so that concurrent operations overlap as they would on a
+     * remote file system.
+     * @throws InterruptedIOException if interrupted whilst waiting
+     */
+    private void simulateLatency() throws InterruptedIOException {
+        if(!open) {
+            throw new ClosedFileSystemException();
+        }
+        if(latencyNanos == 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted whilst simulating latency");
+        }
+    }
+    
+    /**
+     * Finds the node for the given path. Must be called whilst holding the
+     * file system lock.
+     * @param path path to look up
+     * @return node or null if no file exists at path
+     */
+    private MemoryNode lookup(MemoryPath path) {
+        MemoryNode node = root;
+        for(String name : ((MemoryPath) path.toAbsolutePath().normalize()).getNames()) {
+            if(!node.isDirectory()) {
+                return null;
+            }
+            node = node.getChildren().get(name);
+            if(node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+    
+    /**
+     * Gets the node for the given path. Must be called whilst holding the
+     * file system lock.
+     * @param path path to look up
+     * @return node
+     * @throws NoSuchFileException if no file exists at path
+     */
+    private MemoryNode getNode(MemoryPath path) throws NoSuchFileException {
+        MemoryNode node = lookup(path);
+        if(node == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return node;
+    }
+    
+    /**
+     * Gets the directory node that contains the given path. Must be called
+     * whilst holding the file system lock.
+     * @param path path to get the parent directory of
+     * @return parent directory node
+     * @throws FileSystemException if path is the root directory
+     * @throws NoSuchFileException if the parent directory does not exist
+     * @throws NotDirectoryException if the parent is not a directory
+     */
+    private MemoryNode getParentNode(MemoryPath path) throws IOException {
+        Path parent = path.toAbsolutePath().normalize().getParent();
+        if(parent == null) {
+            throw new FileSystemException(path.toString(), null, "Operation not permitted on the root directory");
+        }
+        MemoryNode node = getNode((MemoryPath) parent);
+        if(!node.isDirectory()) {
+            throw new NotDirectoryException(parent.toString());
+        }
+        return node;
+    }
+    
+    /**
+     * Gets the file name of the given path after normalizing it
+     * @param path path
+     * @return file name
+     */
+    private static String getName(MemoryPath path) {
+        return path.toAbsolutePath().normalize().getFileName().toString();
+    }
+    
+    /**
+     * Checks that a file exists at the given path
+     * @param path path to check
+     * @throws IOException if the file does not exist
+     */
+    void checkAccess(MemoryPath path) throws IOException {
+        simulateLatency();
+        synchronized(this) {
+            getNode(path);
+        }
+    }
+    
+    /**
+     * Reads the basic attributes of the file at the given path
+     * @param path path to read the attributes of
+     * @return attributes
+     * @throws IOException if the file does not exist
+     */
+    MemoryFileAttributes readAttributes(MemoryPath path) throws IOException {
+        simulateLatency();
+        MemoryNode node;
+        synchronized(this) {
+            node = getNode(path);
+        }
+        return new MemoryFileAttributes(node);
+    }
+    
+    /**
+     * Sets the times of the file at the given path
+     * @throws IOException if the file does not exist
+     */
+    void setTimes(MemoryPath path, FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
+        simulateLatency();
+        MemoryNode node;
+        synchronized(this) {
+            node = getNode(path);
+        }
+        node.setTimes(lastModifiedTime, lastAccessTime, createTime);
+    }
+    
+    /**
+     * Creates a directory at the given path
+     * @param dir path of the directory to create
+     * @throws IOException if the file already exists or the parent directory
+     * does not exist
+     */
+    void createDirectory(MemoryPath dir) throws IOException {
+        simulateLatency();
+        synchronized(this) {
+            if(lookup(dir) != null) {
+                throw new FileAlreadyExistsException(dir.toString());
+            }
+            getParentNode(dir).getChildren().put(getName(dir), MemoryNode.newDirectory());
+        }
+    }
+    
+    /**
+     * Deletes the file at the given path
+     * @param path path of the file to delete
+     * @throws IOException if the file does not exist or is a non empty
+     * directory
+     */
+    void delete(MemoryPath path) throws IOException {
+        simulateLatency();
+        synchronized(this) {
+            MemoryNode node = getNode(path);
+            if(node.isDirectory() && !node.getChildren().isEmpty()) {
+                throw new DirectoryNotEmptyException(path.toString());
+            }
+            getParentNode(path).getChildren().remove(getName(path));
+        }
+    }
+    
+    /**
+     * Copies or moves a file. Directories are copied without their entries
+     * but are moved with them.
+     * @param source path of the file to copy or move
+     * @param target path to copy or move the file to
+     * @param move true to move the file, false to copy it
+     * @param options StandardCopyOption's
+     * @throws IOException if the source does not exist, the target exists
+     * and REPLACE_EXISTING was not given, or the target parent directory
+     * does not exist
+     */
+    void transfer(MemoryPath source, MemoryPath target, boolean move, CopyOption... options) throws IOException {
+        boolean replace = false;
+        boolean copyAttributes = move;
+        for(CopyOption option : options) {
+            if(option == StandardCopyOption.REPLACE_EXISTING) {
+                replace = true;
+            } else if(option == StandardCopyOption.COPY_ATTRIBUTES) {
+                copyAttributes = true;
+            }
+        }
+        simulateLatency();
+        synchronized(this) {
+            MemoryNode node = getNode(source);
+            MemoryNode existing = lookup(target);
+            if(existing == node) {
+                return;
+            }
+            if(move && node.isDirectory() && target.toAbsolutePath().normalize().startsWith(source.toAbsolutePath().normalize())) {
+                throw new FileSystemException(source.toString(), target.toString(), "Cannot move a directory into itself");
+            }
+            MemoryNode targetParent = getParentNode(target);
+            if(existing != null) {
+                if(!replace) {
+                    throw new FileAlreadyExistsException(target.toString());
+                }
+                if(existing.isDirectory() && !existing.getChildren().isEmpty()) {
+                    throw new DirectoryNotEmptyException(target.toString());
+                }
+            }
+            if(move) {
+                getParentNode(source).getChildren().remove(getName(source));
+                targetParent.getChildren().put(getName(target), node);
+            } else {
+                targetParent.getChildren().put(getName(target), node.copy(copyAttributes));
+            }
+        }
+    }
+    
+    /**
+     * Opens a directory stream over the entries in the given directory
+     * @param dir directory to list
+     * @param filter filter to apply to the entries
+     * @return directory stream
+     * @throws IOException if dir does not exist or is not a directory
+     */
+    DirectoryStream<Path> newDirectoryStream(MemoryPath dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        simulateLatency();
+        ArrayList<String> names;
+        synchronized(this) {
+            MemoryNode node = getNode(dir);
+            if(!node.isDirectory()) {
+                throw new NotDirectoryException(dir.toString());
+            }
+            names = new ArrayList<String>(node.getChildren().keySet());
+        }
+        return new MemoryDirectoryStream(dir, names, filter);
+    }
+    
+    /**
+     * Opens or creates a file
+     * @param path path of the file to open
+     * @param options StandardOpenOption's
+     * @return channel to access the file
+     * @throws IOException if the file could not be opened or created
+     */
+    SeekableByteChannel newByteChannel(MemoryPath path, Set<? extends OpenOption> options) throws IOException {
+        boolean append = options.contains(StandardOpenOption.APPEND);
+        boolean write = append || options.contains(StandardOpenOption.WRITE);
+        boolean read = options.contains(StandardOpenOption.READ) || !write;
+        boolean createNew = write && options.contains(StandardOpenOption.CREATE_NEW);
+        boolean create = write && (createNew || options.contains(StandardOpenOption.CREATE));
+        if(append && (read || options.contains(StandardOpenOption.TRUNCATE_EXISTING))) {
+            throw new IllegalArgumentException("APPEND cannot be combined with READ or TRUNCATE_EXISTING");
+        }
+        simulateLatency();
+        MemoryNode node;
+        synchronized(this) {
+            node = lookup(path);
+            if(node == null) {
+                if(!create) {
+                    throw new NoSuchFileException(path.toString());
+                }
+                node = MemoryNode.newFile();
+                getParentNode(path).getChildren().put(getName(path), node);
+            } else if(createNew) {
+                throw new FileAlreadyExistsException(path.toString());
+            }
+        }
+        if(node.isDirectory()) {
+            throw new FileSystemException(path.toString(), null, "Is a directory");
+        }
+        if(write && options.contains(StandardOpenOption.TRUNCATE_EXISTING)) {
+            node.truncate(0);
+        }
+        return new MemoryByteChannel(node, read, write, append);
+    }
+    
+    /**
+     * Checks if two paths locate the same file
+     * @return true if both paths locate the same file
+     * @throws IOException if either file does not exist
+     */
+    boolean isSameFile(MemoryPath path, MemoryPath path2) throws IOException {
+        if(path.toAbsolutePath().normalize().equals(path2.toAbsolutePath().normalize())) {
+            return true;
+        }
+        simulateLatency();
+        synchronized(this) {
+            return getNode(path) == getNode(path2);
+        }
+    }
+    
+    /**
+     * Gets the basic attributes of the file at the given path as a map
+     * @param path path of the file
+     * @param attributes comma separated attribute names or *
+     * @return map of attribute name to value
+     * @throws IOException if the file does not exist
+     */
+    Map<String, Object> readAttributes(MemoryPath path, String attributes) throws IOException {
+        MemoryFileAttributes attrs = readAttributes(path);
+        Map<String, Object> all = new HashMap<String, Object>();
+        all.put("size", attrs.size());
+        all.put("creationTime", attrs.creationTime());
+        all.put("lastModifiedTime", attrs.lastModifiedTime());
+        all.put("lastAccessTime", attrs.lastAccessTime());
+        all.put("isRegularFile", attrs.isRegularFile());
+        all.put("isDirectory", attrs.isDirectory());
+        all.put("isSymbolicLink", attrs.isSymbolicLink());
+        all.put("isOther", attrs.isOther());
+        all.put("fileKey", attrs.fileKey());
+        Map<String, Object> map = new HashMap<String, Object>();
+        for(String name : attributes.split(",")) {
+            if(name.equals("*")) {
+                map.putAll(all);
+            } else if(all.containsKey(name)) {
+                map.put(name, all.get(name));
+            } else {
+                throw new IllegalArgumentException("Attribute " + name + " is not supported");
+            }
+        }
+        return map;
+    }
+    
+}
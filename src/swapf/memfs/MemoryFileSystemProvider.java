@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf.memfs;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileSystemProvider for MemoryFileSystem's. Memory file systems are not
+ * registered by URI so they are created directly or through
+ * newFileSystem(URI, Map) and are then only reachable through their paths.
+ * @author Sam Malone
+ */
+public class MemoryFileSystemProvider extends FileSystemProvider {
+    
+    public static final String SCHEME = "memory";
+    
+    /**
+     * Environment key for the latency in milliseconds to add to each file
+     * system operation when creating a file system with newFileSystem
+     */
+    public static final String LATENCY_MILLIS = "latencyMillis";
+    
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+    
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        if(!SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("URI scheme is not " + SCHEME);
+        }
+        long latency = 0;
+        Object value = env.get(LATENCY_MILLIS);
+        if(value != null) {
+            latency = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+        }
+        return new MemoryFileSystem(this, TimeUnit.MILLISECONDS.toNanos(latency));
+    }
+    
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        throw new FileSystemNotFoundException("Memory file systems are not registered by URI");
+    }
+    
+    @Override
+    public Path getPath(URI uri) {
+        throw new FileSystemNotFoundException("Memory file systems are not registered by URI");
+    }
+    
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        MemoryPath memoryPath = MemoryPath.cast(path);
+        return memoryPath.getFileSystem().newByteChannel(memoryPath, options);
+    }
+    
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        MemoryPath memoryPath = MemoryPath.cast(dir);
+        return memoryPath.getFileSystem().newDirectoryStream(memoryPath, filter);
+    }
+    
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        MemoryPath memoryPath = MemoryPath.cast(dir);
+        memoryPath.getFileSystem().createDirectory(memoryPath);
+    }
+    
+    @Override
+    public void delete(Path path) throws IOException {
+        MemoryPath memoryPath = MemoryPath.cast(path);
+        memoryPath.getFileSystem().delete(memoryPath);
+    }
+    
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) throws IOException {
+        transfer(source, target, false, options);
+    }
+    
+    @Override
+    public void move(Path source, Path target, CopyOption... options) throws IOException {
+        transfer(source, target, true, options);
+    }
+    
+    private void transfer(Path source, Path target, boolean move, CopyOption... options) throws IOException {
+        MemoryPath memorySource = MemoryPath.cast(source);
+        MemoryPath memoryTarget = MemoryPath.cast(target);
+        if(memorySource.getFileSystem() != memoryTarget.getFileSystem()) {
+            throw new UnsupportedOperationException("Files can only be transferred within the same memory file system");
+        }
+        memorySource.getFileSystem().transfer(memorySource, memoryTarget, move, options);
+    }
+    
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if(!(path2 instanceof MemoryPath) || MemoryPath.cast(path).getFileSystem() != ((MemoryPath) path2).getFileSystem()) {
+            return false;
+        }
+        MemoryPath memoryPath = (MemoryPath) path;
+        return memoryPath.getFileSystem().isSameFile(memoryPath, (MemoryPath) path2);
+    }
+    
+    @Override
+    public boolean isHidden(Path path) {
+        Path name = MemoryPath.cast(path).getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+    
+    @Override
+    public FileStore getFileStore(Path path) {
+        throw new UnsupportedOperationException("Memory file systems do not have file stores");
+    }
+    
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        MemoryPath memoryPath = MemoryPath.cast(path);
+        memoryPath.getFileSystem().checkAccess(memoryPath);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        if(type == BasicFileAttributeView.class) {
+            return (V) new MemoryFileAttributeView(MemoryPath.cast(path));
+        }
+        return null;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        if(type != BasicFileAttributes.class) {
+            throw new UnsupportedOperationException("Only BasicFileAttributes are supported");
+        }
+        MemoryPath memoryPath = MemoryPath.cast(path);
+        return (A) memoryPath.getFileSystem().readAttributes(memoryPath);
+    }
+    
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        MemoryPath memoryPath = MemoryPath.cast(path);
+        return memoryPath.getFileSystem().readAttributes(memoryPath, getBasicAttributeNames(attributes));
+    }
+    
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+        MemoryPath memoryPath = MemoryPath.cast(path);
+        FileTime time = (FileTime) value;
+        String name = getBasicAttributeNames(attribute);
+        if(name.equals("lastModifiedTime")) {
+            memoryPath.getFileSystem().setTimes(memoryPath, time, null, null);
+        } else if(name.equals("lastAccessTime")) {
+            memoryPath.getFileSystem().setTimes(memoryPath, null, time, null);
+        } else if(name.equals("creationTime")) {
+            memoryPath.getFileSystem().setTimes(memoryPath, null, null, time);
+        } else {
+            throw new IllegalArgumentException("Attribute " + attribute + " cannot be set");
+        }
+    }
+    
+    /**
+     * Strips the optional "basic:" view name from the given attributes
+     * @param attributes attributes in the form [view:]names
+     * @return attribute names
+     * @throws UnsupportedOperationException if the view is not basic
+     */
+    private static String getBasicAttributeNames(String attributes) {
+        int index = attributes.indexOf(':');
+        if(index < 0) {
+            return attributes;
+        }
+        if(!attributes.substring(0, index).equals("basic")) {
+            throw new UnsupportedOperationException("Only the basic attribute view is supported");
+        }
+        return attributes.substring(index + 1);
+    }
+    
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf.memfs;
+
+import java.nio.ByteBuffer;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A file or directory stored in a MemoryFileSystem. The children of a
+ * directory are guarded by the file system lock whereas the content and
+ * times of a node are guarded by the node itself.
+ * @author Sam Malone
+ */
+final class MemoryNode {
+    
+    private final boolean directory;
+    private final Map<String, MemoryNode> children;
+    private byte[] content;
+    private int size;
+    private FileTime creationTime;
+    private FileTime lastModifiedTime;
+    private FileTime lastAccessTime;
+    
+    private MemoryNode(boolean directory) {
+        this.directory = directory;
+        this.children = directory ? new TreeMap<String, MemoryNode>() : null;
+        this.content = new byte[0];
+        this.creationTime = FileTime.fromMillis(System.currentTimeMillis());
+        this.lastModifiedTime = creationTime;
+        this.lastAccessTime = creationTime;
+    }
+    
+    /**
+     * Creates a new empty regular file
+     * @return new file node
+     */
+    static MemoryNode newFile() {
+        return new MemoryNode(false);
+    }
+    
+    /**
+     * Creates a new empty directory
+     * @return new directory node
+     */
+    static MemoryNode newDirectory() {
+        return new MemoryNode(true);
+    }
+    
+    boolean isDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Gets the children of this directory, keyed by file name. The map must
+     * only be accessed whilst holding the file system lock.
+     * @return children or null if this node is not a directory
+     */
+    Map<String, MemoryNode> getChildren() {
+        return children;
+    }
+    
+    /**
+     * Creates a copy of this node. Directory children are not copied.
+     * @param copyTimes true to copy the file times, false to use the
+     * current time
+     * @return copy of this node
+     */
+    synchronized MemoryNode copy(boolean copyTimes) {
+        MemoryNode copy = new MemoryNode(directory);
+        copy.content = Arrays.copyOf(content, size);
+        copy.size = size;
+        if(copyTimes) {
+            copy.creationTime = creationTime;
+            copy.lastModifiedTime = lastModifiedTime;
+            copy.lastAccessTime = lastAccessTime;
+        }
+        return copy;
+    }
+    
+    /**
+     * Reads bytes from the given position into the buffer
+     * @param position position to read from
+     * @param dst buffer to read into
+     * @return number of bytes read or -1 if position is at or beyond the
+     * end of the file
+     */
+    synchronized int read(long position, ByteBuffer dst) {
+        if(position >= size) {
+            return -1;
+        }
+        int count = (int) Math.min(dst.remaining(), size - position);
+        dst.put(content, (int) position, count);
+        lastAccessTime = FileTime.fromMillis(System.currentTimeMillis());
+        return count;
+    }
+    
+    /**
+     * Writes the bytes remaining in the buffer at the given position. The
+     * file will grow as required.
+     * @param position position to write at
+     * @param src buffer to write from
+     * @return number of bytes written
+     */
+    synchronized int write(long position, ByteBuffer src) {
+        int count = src.remaining();
+        long end = position + count;
+        if(end > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("Memory file size limit exceeded");
+        }
+        if(end > content.length) {
+            content = Arrays.copyOf(content, (int) Math.max(end, Math.min(Integer.MAX_VALUE, content.length * 2L)));
+        }
+        if(position > size) {
+            Arrays.fill(content, size, (int) position, (byte) 0);
+        }
+        src.get(content, (int) position, count);
+        size = (int) Math.max(size, end);
+        lastModifiedTime = FileTime.fromMillis(System.currentTimeMillis());
+        return count;
+    }
+    
+    /**
+     * Truncates the file to the given size if it is currently larger
+     * @param newSize size to truncate to
+     */
+    synchronized void truncate(long newSize) {
+        if(newSize < size) {
+            size = (int) newSize;
+            lastModifiedTime = FileTime.fromMillis(System.currentTimeMillis());
+        }
+    }
+    
+    synchronized long size() {
+        return size;
+    }
+    
+    synchronized FileTime getCreationTime() {
+        return creationTime;
+    }
+    
+    synchronized FileTime getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+    
+    synchronized FileTime getLastAccessTime() {
+        return lastAccessTime;
+    }
+    
+    /**
+     * Sets the file times. Any null time will be left unchanged.
+     * @param lastModifiedTime new last modified time or null
+     * @param lastAccessTime new last access time or null
+     * @param createTime new creation time or null
+     */
+    synchronized void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+        if(lastModifiedTime != null) {
+            this.lastModifiedTime = lastModifiedTime;
+        }
+        if(lastAccessTime != null) {
+            this.lastAccessTime = lastAccessTime;
+        }
+        if(createTime != null) {
+            this.creationTime = createTime;
+        }
+    }
+    
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2013, Sam Malone. All rights reserved.
+ * 
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *  - Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  - Neither the name of Sam Malone nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package swapf.memfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Path of a file in a MemoryFileSystem. Paths use "/" as the separator and
+ * the working directory for relative paths is the root directory.
+ * @author Sam Malone
+ */
+final class MemoryPath implements Path {
+    
+    private static final String SEPARATOR = "/";
+    
+    private final MemoryFileSystem fs;
+    private final boolean absolute;
+    private final String[] names;
+    
+    MemoryPath(MemoryFileSystem fs, boolean absolute, String[] names) {
+        this.fs = fs;
+        this.absolute = absolute;
+        this.names = names;
+    }
+    
+    /**
+     * Parses the given path string into a MemoryPath. Empty names, caused
+     * by repeated or trailing separators, are ignored.
+     * @param fs file system the path belongs to
+     * @param path path string
+     * @return parsed path
+     */
+    static MemoryPath parse(MemoryFileSystem fs, String path) {
+        if(path.indexOf('\u0000') >= 0) {
+            throw new InvalidPathException(path, "Nul character not allowed");
+        }
+        List<String> list = new ArrayList<String>();
+        for(String name : path.split(SEPARATOR)) {
+            if(!name.isEmpty()) {
+                list.add(name);
+            }
+        }
+        return new MemoryPath(fs, path.startsWith(SEPARATOR), list.toArray(new String[list.size()]));
+    }
+    
+    /**
+     * Casts the given path to a MemoryPath
+     * @param path path to cast
+     * @return path as a MemoryPath
+     * @throws ProviderMismatchException if path is not a MemoryPath
+     */
+    static MemoryPath cast(Path path) {
+        if(!(path instanceof MemoryPath)) {
+            throw new ProviderMismatchException();
+        }
+        return (MemoryPath) path;
+    }
+    
+    /**
+     * Gets the names of this path
+     * @return names, from the root to the file name
+     */
+    String[] getNames() {
+        return names;
+    }
+    
+    @Override
+    public MemoryFileSystem getFileSystem() {
+        return fs;
+    }
+    
+    @Override
+    public boolean isAbsolute() {
+        return absolute;
+    }
+    
+    @Override
+    public Path getRoot() {
+        return absolute ? new MemoryPath(fs, true, new String[0]) : null;
+    }
+    
+    @Override
+    public Path getFileName() {
+        if(names.length == 0) {
+            return null;
+        }
+        return new MemoryPath(fs, false, new String[] { names[names.length - 1] });
+    }
+    
+    @Override
+    public Path getParent() {
+        if(names.length == 0 || (names.length == 1 && !absolute)) {
+            return null;
+        }
+        return new MemoryPath(fs, absolute, Arrays.copyOf(names, names.length - 1));
+    }
+    
+    @Override
+    public int getNameCount() {
+        return names.length;
+    }
+    
+    @Override
+    public Path getName(int index) {
+        return subpath(index, index + 1);
+    }
+    
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        if(beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException();
+        }
+        return new MemoryPath(fs, false, Arrays.copyOfRange(names, beginIndex, endIndex));
+    }
+    
+    @Override
+    public boolean startsWith(Path other) {
+        if(!(other instanceof MemoryPath)) {
+            return false;
+        }
+        MemoryPath path = (MemoryPath) other;
+        if(path.fs != fs || path.absolute != absolute || path.names.length > names.length) {
+            return false;
+        }
+        for(int i = 0; i < path.names.length; i++) {
+            if(!path.names[i].equals(names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean startsWith(String other) {
+        return startsWith(parse(fs, other));
+    }
+    
+    @Override
+    public boolean endsWith(Path other) {
+        if(!(other instanceof MemoryPath)) {
+            return false;
+        }
+        MemoryPath path = (MemoryPath) other;
+        if(path.fs != fs || path.names.length > names.length) {
+            return false;
+        }
+        if(path.absolute) {
+            return equals(path);
+        }
+        if(path.names.length == 0) {
+            return names.length == 0 && !absolute;
+        }
+        int offset = names.length - path.names.length;
+        for(int i = 0; i < path.names.length; i++) {
+            if(!path.names[i].equals(names[offset + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean endsWith(String other) {
+        return endsWith(parse(fs, other));
+    }
+    
+    @Override
+    public Path normalize() {
+        List<String> list = new ArrayList<String>(names.length);
+        for(String name : names) {
+            if(name.equals(".")) {
+                continue;
+            }
+            if(name.equals("..")) {
+                if(!list.isEmpty() && !list.get(list.size() - 1).equals("..")) {
+                    list.remove(list.size() - 1);
+                    continue;
+                }
+                if(absolute) {
+                    continue;
+                }
+            }
+            list.add(name);
+        }
+        return new MemoryPath(fs, absolute, list.toArray(new String[list.size()]));
+    }
+    
+    @Override
+    public Path resolve(Path other) {
+        MemoryPath path = cast(other);
+        if(path.absolute) {
+            return path;
+        }
+        if(path.names.length == 0) {
+            return this;
+        }
+        String[] resolved = Arrays.copyOf(names, names.length + path.names.length);
+        System.arraycopy(path.names, 0, resolved, names.length, path.names.length);
+        return new MemoryPath(fs, absolute, resolved);
+    }
+    
+    @Override
+    public Path resolve(String other) {
+        return resolve(parse(fs, other));
+    }
+    
+    @Override
+    public Path resolveSibling(Path other) {
+        Path parent = getParent();
+        return parent == null ? cast(other) : parent.resolve(other);
+    }
+    
+    @Override
+    public Path resolveSibling(String other) {
+        return resolveSibling(parse(fs, other));
+    }
+    
+    @Override
+    public Path relativize(Path other) {
+        MemoryPath path = cast(other);
+        if(path.absolute != absolute) {
+            throw new IllegalArgumentException("Only paths of the same type can be relativized");
+        }
+        int common = 0;
+        while(common < names.length && common < path.names.length && names[common].equals(path.names[common])) {
+            common++;
+        }
+        List<String> list = new ArrayList<String>();
+        for(int i = common; i < names.length; i++) {
+            list.add("..");
+        }
+        list.addAll(Arrays.asList(path.names).subList(common, path.names.length));
+        return new MemoryPath(fs, false, list.toArray(new String[list.size()]));
+    }
+    
+    @Override
+    public URI toUri() {
+        try {
+            return new URI(MemoryFileSystemProvider.SCHEME, null, toAbsolutePath().toString(), null);
+        } catch(URISyntaxException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    @Override
+    public Path toAbsolutePath() {
+        return absolute ? this : new MemoryPath(fs, true, names);
+    }
+    
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        Path real = toAbsolutePath().normalize();
+        fs.readAttributes(cast(real));
+        return real;
+    }
+    
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException("Memory paths cannot be converted to a File");
+    }
+    
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) throws IOException {
+        throw new UnsupportedOperationException("Memory file systems cannot be watched");
+    }
+    
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) throws IOException {
+        throw new UnsupportedOperationException("Memory file systems cannot be watched");
+    }
+    
+    @Override
+    public Iterator<Path> iterator() {
+        List<Path> list = new ArrayList<Path>(names.length);
+        for(int i = 0; i < names.length; i++) {
+            list.add(getName(i));
+        }
+        return list.iterator();
+    }
+    
+    @Override
+    public int compareTo(Path other) {
+        return toString().compareTo(cast(other).toString());
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if(!(obj instanceof MemoryPath)) {
+            return false;
+        }
+        MemoryPath path = (MemoryPath) obj;
+        return path.fs == fs && path.absolute == absolute && Arrays.equals(path.names, names);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(names) + (absolute ? 1 : 0);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < names.length; i++) {
+            if(i > 0 || absolute) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(names[i]);
+        }
+        if(absolute && names.length == 0) {
+            sb.append(SEPARATOR);
+        }
+        return sb.toString();
+    }
+    
+}